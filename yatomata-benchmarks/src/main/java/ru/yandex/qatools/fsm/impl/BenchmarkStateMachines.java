@@ -0,0 +1,511 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.PoolableState;
+import ru.yandex.qatools.fsm.annotations.*;
+
+import java.io.Serializable;
+
+/**
+ * FSM shapes used by the benchmarks
+ *
+ * @author Ilya Sadykov
+ */
+public final class BenchmarkStateMachines {
+
+    private BenchmarkStateMachines() {
+    }
+
+    // ---------------------------------------------------------------- states
+
+    public static class Counter {
+        long value;
+    }
+
+    public static class S0 {
+    }
+
+    public static class S1 {
+    }
+
+    public static class S2 {
+    }
+
+    public static class S3 {
+    }
+
+    public static class L0 {
+    }
+
+    public static class L1 {
+    }
+
+    public static class L2 {
+    }
+
+    public static class L3 {
+    }
+
+    public static class L4 {
+    }
+
+    public static class L5 {
+    }
+
+    public static class L6 {
+    }
+
+    public static class L7 {
+    }
+
+    public static class LE0 {
+    }
+
+    public static class LE1 {
+    }
+
+    public static class LE2 {
+    }
+
+    public static class LE3 {
+    }
+
+    public static class LE4 {
+    }
+
+    public static class LE5 {
+    }
+
+    public static class LE6 {
+    }
+
+    public static class LE7 {
+    }
+
+    public static class PooledCounter implements PoolableState {
+        long value;
+
+        @Override
+        public void reset() {
+            value = 0;
+        }
+    }
+
+    public static class P0 extends PooledCounter {
+    }
+
+    public static class P1 extends PooledCounter {
+    }
+
+    public static class P2 extends PooledCounter {
+    }
+
+    public static class P3 extends PooledCounter {
+    }
+
+    public interface Base extends Serializable {
+    }
+
+    public interface Level1 extends Base {
+    }
+
+    public interface Level2 extends Level1 {
+    }
+
+    public static class DeepState0 implements Base {
+    }
+
+    public static class DeepState1 extends DeepState0 implements Level1 {
+    }
+
+    public static class DeepState2 extends DeepState1 implements Level2 {
+    }
+
+    public static class DeepState3 extends DeepState2 implements Cloneable {
+    }
+
+    public static class DeepState4 extends DeepState3 implements Comparable<DeepState4> {
+        @Override
+        public int compareTo(DeepState4 o) {
+            return 0;
+        }
+    }
+
+    public interface Diamond0 {
+    }
+
+    public interface Diamond1a extends Diamond0 {
+    }
+
+    public interface Diamond1b extends Diamond0 {
+    }
+
+    public interface Diamond2a extends Diamond1a, Diamond1b {
+    }
+
+    public interface Diamond2b extends Diamond1a, Diamond1b {
+    }
+
+    public interface Diamond3a extends Diamond2a, Diamond2b {
+    }
+
+    public interface Diamond3b extends Diamond2a, Diamond2b {
+    }
+
+    public interface Diamond4a extends Diamond3a, Diamond3b {
+    }
+
+    public interface Diamond4b extends Diamond3a, Diamond3b {
+    }
+
+    public static class DiamondStateBase implements Diamond4a {
+    }
+
+    public static class DiamondState extends DiamondStateBase implements Diamond4a, Diamond4b {
+    }
+
+    // ---------------------------------------------------------------- events
+
+    public static class Tick {
+    }
+
+    public static class Next {
+    }
+
+    public static class E0 {
+    }
+
+    public static class E1 {
+    }
+
+    public static class E2 {
+    }
+
+    public static class E3 {
+    }
+
+    public static class E4 {
+    }
+
+    public static class E5 {
+    }
+
+    public static class E6 {
+    }
+
+    public static class E7 {
+    }
+
+    public static class E8 {
+    }
+
+    public static class E9 {
+    }
+
+    public static class E10 {
+    }
+
+    public static class E11 {
+    }
+
+    public static class E12 {
+    }
+
+    public static class E13 {
+    }
+
+    public static class E14 {
+    }
+
+    public static class E15 {
+    }
+
+    public static class DeepEvent0 implements Base {
+    }
+
+    public static class DeepEvent1 extends DeepEvent0 implements Level1 {
+    }
+
+    public static class DeepEvent2 extends DeepEvent1 implements Level2 {
+    }
+
+    public static class DeepEvent3 extends DeepEvent2 implements Cloneable {
+    }
+
+    public static class DeepEvent4 extends DeepEvent3 implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+
+    public static class DiamondEventBase implements Diamond4b {
+    }
+
+    public static class DiamondEvent extends DiamondEventBase implements Diamond4a, Diamond4b {
+    }
+
+    // ---------------------------------------------------------------- shapes
+
+    /**
+     * Single state aggregating the incoming events
+     */
+    @FSM(start = Counter.class)
+    @Transitions(@Transit(on = Tick.class))
+    public static class LoopStateMachine {
+        @OnTransit
+        public void count(Counter state, Tick event) {
+            ++state.value;
+        }
+    }
+
+    /**
+     * Cycle of states changed by each event
+     */
+    @FSM(start = S0.class)
+    @Transitions({
+            @Transit(from = S0.class, on = Next.class, to = S1.class),
+            @Transit(from = S1.class, on = Next.class, to = S2.class),
+            @Transit(from = S2.class, on = Next.class, to = S3.class),
+            @Transit(from = S3.class, on = Next.class, to = S0.class),
+    })
+    public static class ChainStateMachine {
+        @OnTransit
+        public void onNext(Object from, Object to, Next event) {
+        }
+    }
+
+    /**
+     * Cycle of states shared by all the instances
+     */
+    @FSM(start = S0.class, sharedStates = true)
+    public static class SharedChainStateMachine extends ChainStateMachine {
+    }
+
+    /**
+     * Cycle of the counting states recycled by the pool
+     */
+    @FSM(start = P0.class)
+    @Transitions({
+            @Transit(from = P0.class, on = Next.class, to = P1.class),
+            @Transit(from = P1.class, on = Next.class, to = P2.class),
+            @Transit(from = P2.class, on = Next.class, to = P3.class),
+            @Transit(from = P3.class, on = Next.class, to = P0.class),
+    })
+    public static class PooledChainStateMachine {
+        @OnTransit
+        public void onNext(PooledCounter from, PooledCounter to, Next event) {
+            to.value = from.value + 1;
+        }
+    }
+
+    /**
+     * Cycle of shared states with the single FSM instance shared by all the engines
+     */
+    @FSM(start = S0.class, sharedStates = true, sharedHandler = true)
+    public static class SharedHandlerStateMachine extends ChainStateMachine {
+    }
+
+    /**
+     * Many transitions from any state
+     */
+    @FSM(start = Counter.class)
+    @Transitions({
+            @Transit(on = E0.class), @Transit(on = E1.class), @Transit(on = E2.class), @Transit(on = E3.class),
+            @Transit(on = E4.class), @Transit(on = E5.class), @Transit(on = E6.class), @Transit(on = E7.class),
+            @Transit(on = E8.class), @Transit(on = E9.class), @Transit(on = E10.class), @Transit(on = E11.class),
+            @Transit(on = E12.class), @Transit(on = E13.class), @Transit(on = E14.class), @Transit(on = E15.class),
+    })
+    public static class WideStateMachine {
+        @OnTransit
+        public void count(Counter state, Object event) {
+            ++state.value;
+        }
+    }
+
+    /**
+     * Large table of 64 transitions between 8 states on 8 events
+     */
+    @FSM(start = L0.class)
+    @Transitions({
+            @Transit(from = L0.class, on = LE0.class, to = L1.class),
+            @Transit(from = L0.class, on = LE1.class, to = L2.class),
+            @Transit(from = L0.class, on = LE2.class, to = L3.class),
+            @Transit(from = L0.class, on = LE3.class, to = L4.class),
+            @Transit(from = L0.class, on = LE4.class, to = L5.class),
+            @Transit(from = L0.class, on = LE5.class, to = L6.class),
+            @Transit(from = L0.class, on = LE6.class, to = L7.class),
+            @Transit(from = L0.class, on = LE7.class, to = L0.class),
+            @Transit(from = L1.class, on = LE0.class, to = L2.class),
+            @Transit(from = L1.class, on = LE1.class, to = L3.class),
+            @Transit(from = L1.class, on = LE2.class, to = L4.class),
+            @Transit(from = L1.class, on = LE3.class, to = L5.class),
+            @Transit(from = L1.class, on = LE4.class, to = L6.class),
+            @Transit(from = L1.class, on = LE5.class, to = L7.class),
+            @Transit(from = L1.class, on = LE6.class, to = L0.class),
+            @Transit(from = L1.class, on = LE7.class, to = L1.class),
+            @Transit(from = L2.class, on = LE0.class, to = L3.class),
+            @Transit(from = L2.class, on = LE1.class, to = L4.class),
+            @Transit(from = L2.class, on = LE2.class, to = L5.class),
+            @Transit(from = L2.class, on = LE3.class, to = L6.class),
+            @Transit(from = L2.class, on = LE4.class, to = L7.class),
+            @Transit(from = L2.class, on = LE5.class, to = L0.class),
+            @Transit(from = L2.class, on = LE6.class, to = L1.class),
+            @Transit(from = L2.class, on = LE7.class, to = L2.class),
+            @Transit(from = L3.class, on = LE0.class, to = L4.class),
+            @Transit(from = L3.class, on = LE1.class, to = L5.class),
+            @Transit(from = L3.class, on = LE2.class, to = L6.class),
+            @Transit(from = L3.class, on = LE3.class, to = L7.class),
+            @Transit(from = L3.class, on = LE4.class, to = L0.class),
+            @Transit(from = L3.class, on = LE5.class, to = L1.class),
+            @Transit(from = L3.class, on = LE6.class, to = L2.class),
+            @Transit(from = L3.class, on = LE7.class, to = L3.class),
+            @Transit(from = L4.class, on = LE0.class, to = L5.class),
+            @Transit(from = L4.class, on = LE1.class, to = L6.class),
+            @Transit(from = L4.class, on = LE2.class, to = L7.class),
+            @Transit(from = L4.class, on = LE3.class, to = L0.class),
+            @Transit(from = L4.class, on = LE4.class, to = L1.class),
+            @Transit(from = L4.class, on = LE5.class, to = L2.class),
+            @Transit(from = L4.class, on = LE6.class, to = L3.class),
+            @Transit(from = L4.class, on = LE7.class, to = L4.class),
+            @Transit(from = L5.class, on = LE0.class, to = L6.class),
+            @Transit(from = L5.class, on = LE1.class, to = L7.class),
+            @Transit(from = L5.class, on = LE2.class, to = L0.class),
+            @Transit(from = L5.class, on = LE3.class, to = L1.class),
+            @Transit(from = L5.class, on = LE4.class, to = L2.class),
+            @Transit(from = L5.class, on = LE5.class, to = L3.class),
+            @Transit(from = L5.class, on = LE6.class, to = L4.class),
+            @Transit(from = L5.class, on = LE7.class, to = L5.class),
+            @Transit(from = L6.class, on = LE0.class, to = L7.class),
+            @Transit(from = L6.class, on = LE1.class, to = L0.class),
+            @Transit(from = L6.class, on = LE2.class, to = L1.class),
+            @Transit(from = L6.class, on = LE3.class, to = L2.class),
+            @Transit(from = L6.class, on = LE4.class, to = L3.class),
+            @Transit(from = L6.class, on = LE5.class, to = L4.class),
+            @Transit(from = L6.class, on = LE6.class, to = L5.class),
+            @Transit(from = L6.class, on = LE7.class, to = L6.class),
+            @Transit(from = L7.class, on = LE0.class, to = L0.class),
+            @Transit(from = L7.class, on = LE1.class, to = L1.class),
+            @Transit(from = L7.class, on = LE2.class, to = L2.class),
+            @Transit(from = L7.class, on = LE3.class, to = L3.class),
+            @Transit(from = L7.class, on = LE4.class, to = L4.class),
+            @Transit(from = L7.class, on = LE5.class, to = L5.class),
+            @Transit(from = L7.class, on = LE6.class, to = L6.class),
+            @Transit(from = L7.class, on = LE7.class, to = L7.class),
+    })
+    public static class LargeTableStateMachine {
+    }
+
+    public enum LargeState {
+        S0, S1, S2, S3, S4, S5, S6, S7
+    }
+
+    public enum LargeEvent {
+        V0, V1, V2, V3, V4, V5, V6, V7
+    }
+
+    /**
+     * The same table as {@link LargeTableStateMachine} between the enum constants
+     */
+    public static final EnumFSMDefinition<LargeTableStateMachine, LargeState, LargeEvent> LARGE_ENUM_TABLE =
+            largeEnumTable();
+
+    private static EnumFSMDefinition<LargeTableStateMachine, LargeState, LargeEvent> largeEnumTable() {
+        final EnumFSMDefinition.Builder<LargeTableStateMachine, LargeState, LargeEvent> builder =
+                EnumFSMDefinition.builder(LargeTableStateMachine.class, LargeState.class, LargeEvent.class)
+                        .start(LargeState.S0);
+        final LargeState[] states = LargeState.values();
+        for (LargeState from : states) {
+            for (LargeEvent on : LargeEvent.values()) {
+                builder.transit(from, on, states[(from.ordinal() + on.ordinal() + 1) % states.length]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Transitions and hooks declared for the base interfaces of deep state and event hierarchies
+     */
+    @FSM(start = DeepState4.class)
+    @Transitions(@Transit(from = Base.class, on = Level1.class))
+    public static class DeepStateMachine {
+        @OnTransit
+        public void onEvent(Base state, Base event) {
+        }
+    }
+
+    /**
+     * Transitions and hooks declared for the root of the interface hierarchies reachable along many paths
+     */
+    @FSM(start = DiamondState.class)
+    @Transitions(@Transit(from = Diamond0.class, on = Diamond0.class))
+    public static class DiamondStateMachine {
+        @OnTransit
+        public void onEvent(Diamond0 state, Diamond0 event) {
+        }
+    }
+
+    /**
+     * Single state without any hooks
+     */
+    @FSM(start = Counter.class)
+    @Transitions(@Transit(on = Tick.class))
+    public static class NoHooksStateMachine {
+    }
+
+    /**
+     * Before, on and after hooks of different arity
+     */
+    @FSM(start = Counter.class)
+    @Transitions(@Transit(on = Tick.class))
+    public static class AllHooksStateMachine {
+        @BeforeTransit
+        public void before(Tick event) {
+        }
+
+        @BeforeTransit
+        public void before(Counter state, Tick event) {
+        }
+
+        @OnTransit
+        public void on(Counter from, Counter to, Tick event) {
+        }
+
+        @AfterTransit
+        public void after(Object event) {
+        }
+    }
+
+    /**
+     * The hook with the annotated parameters
+     */
+    @FSM(start = Counter.class)
+    @Transitions(@Transit(on = Tick.class))
+    public static class AnnotatedHooksStateMachine {
+        @OnTransit
+        public void on(@Event Tick event, @ToState Counter to, @FromState Counter from) {
+        }
+    }
+
+    /**
+     * The hook throws the exception handled by the preserving and rolling back handlers
+     */
+    @FSM(start = Counter.class)
+    @Transitions(@Transit(on = Tick.class))
+    public static class FailingStateMachine {
+        private static final IllegalStateException PRESERVED = new IllegalStateException("preserved");
+        private static final IllegalArgumentException ROLLED_BACK = new IllegalArgumentException("rolled back");
+        boolean preserve;
+
+        @OnTransit
+        public void onTick(Counter state, Tick event) {
+            throw preserve ? PRESERVED : ROLLED_BACK;
+        }
+
+        @OnException(preserve = true)
+        public void onPreserved(IllegalStateException e, Counter state) {
+        }
+
+        @OnException
+        public void onRolledBack(IllegalArgumentException e, Counter state) {
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.Yatomata;
+
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.*;
+
+/**
+ * Measures the cost of the FSM engine creation and of the cold metadata building
+ *
+ * @author Ilya Sadykov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BuildBenchmark {
+
+    private final FSMBuilder<LoopStateMachine> classBuilder = new FSMBuilder<>(LoopStateMachine.class);
+    private final FSMBuilder<LoopStateMachine> instanceBuilder = new FSMBuilder<>(new LoopStateMachine());
+    private final FSMBuilder<SharedChainStateMachine> sharedStatesBuilder =
+            new FSMBuilder<>(SharedChainStateMachine.class);
+    private final FSMBuilder<SharedHandlerStateMachine> sharedHandlerBuilder =
+            new FSMBuilder<>(SharedHandlerStateMachine.class);
+
+    @Benchmark
+    public Yatomata<LoopStateMachine> buildFromClass() {
+        return classBuilder.build();
+    }
+
+    @Benchmark
+    public Yatomata<LoopStateMachine> buildFromInstance() {
+        return instanceBuilder.build();
+    }
+
+    /**
+     * Instantiates the FSM per engine, the start state is shared
+     */
+    @Benchmark
+    public Yatomata<SharedChainStateMachine> buildWithSharedStates() {
+        return sharedStatesBuilder.build();
+    }
+
+    /**
+     * Allocates nothing but the engine: both the FSM instance and the start state are shared
+     */
+    @Benchmark
+    public Yatomata<SharedHandlerStateMachine> buildWithSharedHandler() {
+        return sharedHandlerBuilder.build();
+    }
+
+    @Benchmark
+    public Yatomata<LoopStateMachine> buildWithState() {
+        return instanceBuilder.build(new Counter());
+    }
+
+    /**
+     * Builds the metadata as Metadata.get() does on the first use of the FSM class
+     */
+    @Benchmark
+    public Metadata.ClassInfo coldMetadata() throws FSMException {
+        return new Metadata.ClassInfo<>(AllHooksStateMachine.class);
+    }
+
+    @Benchmark
+    public Metadata.ClassInfo coldMetadataWideTransitions() throws FSMException {
+        return new Metadata.ClassInfo<>(WideStateMachine.class);
+    }
+}
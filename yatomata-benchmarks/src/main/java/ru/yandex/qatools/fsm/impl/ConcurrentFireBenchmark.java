@@ -0,0 +1,108 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.FSM;
+import ru.yandex.qatools.fsm.annotations.OnTransit;
+import ru.yandex.qatools.fsm.annotations.Transit;
+import ru.yandex.qatools.fsm.annotations.Transitions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the fire() throughput of the independent FSM instances of the same class scales with the number of
+ * threads. All the threads share the same class metadata, so any contention within it shows up as the sublinear
+ * scaling of the total throughput.
+ *
+ * @author Ilya Sadykov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConcurrentFireBenchmark {
+
+    public static class Idle {
+    }
+
+    public static class Running {
+    }
+
+    public static class Start {
+    }
+
+    public static class Tick {
+    }
+
+    public static class Stop {
+    }
+
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(from = Idle.class, on = Start.class, to = Running.class),
+            @Transit(from = Running.class, on = Tick.class),
+            @Transit(from = Running.class, on = Stop.class, to = Idle.class)
+    })
+    public static class TickingStateMachine {
+        long ticks;
+
+        @OnTransit
+        public void onTick(Running state, Tick event) {
+            ++ticks;
+        }
+    }
+
+    private final Start start = new Start();
+    private final Tick tick = new Tick();
+    private final Stop stop = new Stop();
+    private Yatomata<TickingStateMachine> engine;
+    private int step;
+
+    @Setup
+    public void setUp() {
+        engine = new FSMBuilder<>(TickingStateMachine.class).build();
+    }
+
+    private Object fire() {
+        switch (step++ & 7) {
+            case 0:
+                return engine.fire(start);
+            case 7:
+                return engine.fire(stop);
+            default:
+                return engine.fire(tick);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object fire1Thread() {
+        return fire();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Object fire2Threads() {
+        return fire();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object fire4Threads() {
+        return fire();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object fireMaxThreads() {
+        return fire();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object buildAndFireMaxThreads() {
+        return new FSMBuilder<>(TickingStateMachine.class).build().fire(start);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.qatools.fsm.Yatomata;
+
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.*;
+
+/**
+ * Compares the table of the FSM instances with the engine per instance for the large number of instances
+ *
+ * @author Ilya Sadykov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Thread)
+public class FSMTableBenchmark {
+
+    @Param({"1000000"})
+    public int instances;
+
+    private final Next event = new Next();
+    private FSMTable<ChainStateMachine> table;
+    private Yatomata<?>[] engines;
+    private int key;
+
+    @Setup
+    public void setUp() {
+        table = new FSMTable<>(ChainStateMachine.class, instances);
+        engines = new Yatomata[instances];
+        final FSMBuilder<ChainStateMachine> builder = new FSMBuilder<>(new ChainStateMachine());
+        for (int i = 0; i < instances; ++i) {
+            engines[i] = builder.build();
+        }
+    }
+
+    private int nextKey() {
+        key = (key + 7919) % instances;
+        return key;
+    }
+
+    @Benchmark
+    public Object fireTable() {
+        return table.fire(nextKey(), event);
+    }
+
+    @Benchmark
+    public Object fireEngines() {
+        return engines[nextKey()].fire(event);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int countInStateTable() {
+        return table.countInState(S1.class);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int countInStateEngines() {
+        int count = 0;
+        for (Yatomata<?> engine : engines) {
+            if (engine.getCurrentState() instanceof S1) {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.qatools.fsm.FireResult;
+import ru.yandex.qatools.fsm.Yatomata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.AllHooksStateMachine;
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.Tick;
+
+/**
+ * Compares the batch of events fired with fireAll() against the same events fired one by one
+ *
+ * @author Ilya Sadykov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FireAllBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int batchSize;
+
+    private final List<Object> events = new ArrayList<>();
+    private Yatomata<AllHooksStateMachine> engine;
+
+    @Setup
+    public void setUp() {
+        engine = new FSMBuilder<>(AllHooksStateMachine.class).build();
+        for (int i = 0; i < batchSize; ++i) {
+            events.add(new Tick());
+        }
+    }
+
+    @Benchmark
+    public Object fireLoop() {
+        Object state = null;
+        for (Object event : events) {
+            state = engine.fire(event);
+        }
+        return state;
+    }
+
+    @Benchmark
+    public FireResult fireAll() {
+        return engine.fireAll(events);
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.qatools.fsm.Yatomata;
+
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.*;
+
+/**
+ * Measures the throughput and the latency of fire() for the different FSM shapes
+ *
+ * @author Ilya Sadykov
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FireBenchmark {
+
+    /**
+     * loop - single state aggregating the events;
+     * chain - each event changes the state;
+     * chainShared - each event changes the state, the states are shared;
+     * chainPooled - each event changes the state, the left states are recycled;
+     * wide - 16 transitions from any state, events are fired in turn;
+     * deep - transition and hook are declared for the base interfaces of the deep hierarchies
+     */
+    @Param({"loop", "chain", "chainShared", "chainPooled", "wide", "deep"})
+    public String shape;
+
+    private Yatomata<?> engine;
+    private Object[] events;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        switch (shape) {
+            case "loop":
+                engine = new FSMBuilder<>(LoopStateMachine.class).build();
+                events = new Object[]{new Tick()};
+                break;
+            case "chain":
+                engine = new FSMBuilder<>(ChainStateMachine.class).build();
+                events = new Object[]{new Next()};
+                break;
+            case "chainShared":
+                engine = new FSMBuilder<>(SharedChainStateMachine.class).build();
+                events = new Object[]{new Next()};
+                break;
+            case "chainPooled":
+                engine = new FSMBuilder<>(PooledChainStateMachine.class).build();
+                events = new Object[]{new Next()};
+                break;
+            case "wide":
+                engine = new FSMBuilder<>(WideStateMachine.class).build();
+                events = new Object[]{
+                        new E0(), new E1(), new E2(), new E3(), new E4(), new E5(), new E6(), new E7(),
+                        new E8(), new E9(), new E10(), new E11(), new E12(), new E13(), new E14(), new E15()
+                };
+                break;
+            case "deep":
+                engine = new FSMBuilder<>(DeepStateMachine.class).build();
+                events = new Object[]{new DeepEvent4(), new DeepEvent2()};
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+    }
+
+    @Benchmark
+    public Object fire() {
+        final Object event = events[next];
+        next = (next + 1 == events.length) ? 0 : next + 1;
+        return engine.fire(event);
+    }
+
+    @Benchmark
+    public Object ignoredEvent() {
+        return engine.fire(this);
+    }
+}
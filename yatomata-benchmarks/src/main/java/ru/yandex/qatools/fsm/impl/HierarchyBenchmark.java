@@ -0,0 +1,35 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.qatools.fsm.FSMException;
+
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.*;
+
+/**
+ * Measures the first dispatch of the event (the transition lookup and the hooks planning) within the new metadata
+ * of the FSM with the deep interface hierarchies reachable along many paths (see {@link DiamondStateMachine})
+ *
+ * @author Ilya Sadykov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HierarchyBenchmark {
+
+    private final DiamondStateMachine fsm = new DiamondStateMachine();
+    private final DiamondState state = new DiamondState();
+    private final DiamondEvent event = new DiamondEvent();
+    private final ParametersProvider parameters = new ParametersProvider();
+
+    @Benchmark
+    public Object coldDispatch() throws FSMException {
+        final Metadata.ClassInfo<DiamondStateMachine> info = new Metadata.ClassInfo<>(DiamondStateMachine.class);
+        info.findSingleTransition(state, event);
+        return info.callHooks(fsm, parameters, null, state, state, event);
+    }
+}
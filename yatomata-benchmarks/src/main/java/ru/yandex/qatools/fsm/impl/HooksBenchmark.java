@@ -0,0 +1,59 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.qatools.fsm.Yatomata;
+
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.*;
+
+/**
+ * Measures the cost of the hook methods depending on their count and signatures
+ *
+ * @author Ilya Sadykov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HooksBenchmark {
+
+    /**
+     * none - no hooks at all;
+     * single - single @OnTransit hook;
+     * all - two @BeforeTransit, one @OnTransit and one @AfterTransit hooks of different arity;
+     * annotated - single @OnTransit hook with the annotated parameters
+     */
+    @Param({"none", "single", "all", "annotated"})
+    public String hooks;
+
+    private final Tick tick = new Tick();
+    private Yatomata<?> engine;
+
+    @Setup
+    public void setUp() {
+        switch (hooks) {
+            case "none":
+                engine = new FSMBuilder<>(NoHooksStateMachine.class).build();
+                break;
+            case "single":
+                engine = new FSMBuilder<>(LoopStateMachine.class).build();
+                break;
+            case "all":
+                engine = new FSMBuilder<>(AllHooksStateMachine.class).build();
+                break;
+            case "annotated":
+                engine = new FSMBuilder<>(AnnotatedHooksStateMachine.class).build();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown hooks " + hooks);
+        }
+    }
+
+    @Benchmark
+    public Object fire() {
+        return engine.fire(tick);
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.LoopStateMachine;
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.Tick;
+
+/**
+ * Measures how the throughput of the keyed executor scales with the number of shards. The shard queues are bounded,
+ * so the submission rate of the producers is limited by the processing rate of the shards.
+ *
+ * @author Ilya Sadykov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class KeyedFSMExecutorBenchmark {
+
+    private static final int KEYS = 4096;
+
+    @State(Scope.Benchmark)
+    public static class Executor {
+        @Param({"1", "2", "4"})
+        public int shards;
+
+        KeyedFSMExecutor<Integer, LoopStateMachine> executor;
+
+        @Setup
+        public void setUp() {
+            executor = new KeyedFSMExecutor<>(new FSMBuilder<>(LoopStateMachine.class), null, shards,
+                    KeyedFSMExecutor.DEFAULT_QUEUE_CAPACITY);
+        }
+
+        @TearDown
+        public void tearDown() throws InterruptedException {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        final Tick tick = new Tick();
+        int key;
+    }
+
+    @Benchmark
+    public void submit(Executor executor, Producer producer) throws InterruptedException {
+        producer.key = (producer.key + 1) & (KEYS - 1);
+        executor.executor.submit(producer.key, producer.tick);
+    }
+}
@@ -0,0 +1,60 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.qatools.fsm.TransitionListener;
+import ru.yandex.qatools.fsm.TransitionListenerAdapter;
+import ru.yandex.qatools.fsm.Yatomata;
+
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.AllHooksStateMachine;
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.Tick;
+
+/**
+ * Measures the overhead of the transition listener: none (the listener is not attached), noop (the listener ignoring
+ * all the notifications), statistics (the default listener collecting the counters and the histograms) and mbeans
+ * (the per-FSM-class counters published through JMX)
+ *
+ * @author Ilya Sadykov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListenerBenchmark {
+
+    @Param({"none", "noop", "statistics", "mbeans"})
+    public String listener;
+
+    private final Tick tick = new Tick();
+    private Yatomata<AllHooksStateMachine> engine;
+
+    @Setup
+    public void setUp() {
+        final FSMBuilder<AllHooksStateMachine> builder = new FSMBuilder<>(AllHooksStateMachine.class);
+        switch (listener) {
+            case "none":
+                break;
+            case "noop":
+                builder.withListener(new TransitionListenerAdapter() {
+                });
+                break;
+            case "statistics":
+                builder.withListener(new TransitionStatistics());
+                break;
+            case "mbeans":
+                builder.withListener(new YatomataMBeans().register());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown listener " + listener);
+        }
+        engine = builder.build();
+    }
+
+    @Benchmark
+    public Object fire() {
+        return engine.fire(tick);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.qatools.fsm.Yatomata;
+
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.FailingStateMachine;
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.Tick;
+
+/**
+ * Measures fire() when the hook throws the exception handled by the @OnException method
+ *
+ * @author Ilya Sadykov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OnExceptionBenchmark {
+
+    /**
+     * Whether the handler preserves the transition or rolls it back
+     */
+    @Param({"true", "false"})
+    public boolean preserve;
+
+    private final Tick tick = new Tick();
+    private Yatomata<FailingStateMachine> engine;
+
+    @Setup
+    public void setUp() {
+        engine = new FSMBuilder<>(FailingStateMachine.class).build();
+        engine.getFSM().preserve = preserve;
+    }
+
+    @Benchmark
+    public Object fire() {
+        return engine.fire(tick);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.annotations.FSM;
+import ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.Tick;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to the first transition of each FSM class declared by {@link BenchmarkStateMachines} within
+ * the fresh JVM: lazy (the metadata is built by the first fire) and preloaded (the metadata is built by
+ * {@link FSMPreloader} in advance, as the application would do at startup)
+ *
+ * @author Ilya Sadykov
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param({"lazy", "preloaded"})
+    public String metadata;
+
+    private final List<Class<?>> fsmClasses = new ArrayList<>();
+    private final Tick tick = new Tick();
+
+    @Setup
+    public void setUp() throws FSMException {
+        for (Class<?> clazz : BenchmarkStateMachines.class.getClasses()) {
+            if (clazz.isAnnotationPresent(FSM.class)) {
+                fsmClasses.add(clazz);
+            }
+        }
+        if ("preloaded".equals(metadata)) {
+            FSMPreloader.preload(fsmClasses);
+        }
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public int firstTransitions() {
+        int completed = 0;
+        for (Class<?> fsmClass : fsmClasses) {
+            if (new FSMBuilder<>((Class<Object>) fsmClass).build().fire(tick) != null) {
+                ++completed;
+            }
+        }
+        return completed;
+    }
+}
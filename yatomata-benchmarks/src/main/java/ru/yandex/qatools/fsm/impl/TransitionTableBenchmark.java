@@ -0,0 +1,71 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.Yatomata;
+
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.qatools.fsm.impl.BenchmarkStateMachines.*;
+
+/**
+ * Measures the transition lookup within the FSM with 64 transitions (see {@link LargeTableStateMachine}): the
+ * resolution of the (state class, event class) pair which is not memoized yet, the warm fire and the fire of the
+ * same table between the enum constants (see {@link EnumFSMDefinition})
+ *
+ * @author Ilya Sadykov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransitionTableBenchmark {
+
+    private static final Class[] STATES = {
+            L0.class, L1.class, L2.class, L3.class, L4.class, L5.class, L6.class, L7.class
+    };
+    private static final Object[] EVENTS = {
+            new LE0(), new LE1(), new LE2(), new LE3(), new LE4(), new LE5(), new LE6(), new LE7()
+    };
+    private static final LargeEvent[] ENUM_EVENTS = LargeEvent.values();
+
+    private Metadata.ClassInfo<LargeTableStateMachine> info;
+    private Yatomata<LargeTableStateMachine> engine;
+    private EnumYatomata<LargeTableStateMachine, LargeState, LargeEvent> enumEngine;
+    private int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws FSMException {
+        info = Metadata.get(LargeTableStateMachine.class);
+        engine = new FSMBuilder<>(LargeTableStateMachine.class).build();
+        enumEngine = new EnumFSMBuilder<>(LARGE_ENUM_TABLE).build();
+    }
+
+    /**
+     * Resolves the transition of the next (state class, event class) pair bypassing the memoization, as the first
+     * event of the pair does
+     */
+    @Benchmark
+    public Object resolve() {
+        final int pair = next;
+        next = (pair + 1) & 63;
+        return info.resolveSingleTransition(STATES[pair >>> 3], EVENTS[pair & 7].getClass());
+    }
+
+    @Benchmark
+    public Object fire() {
+        final int event = next;
+        next = (event + 1) & 7;
+        return engine.fire(EVENTS[event]);
+    }
+
+    @Benchmark
+    public Object enumFire() {
+        final int event = next;
+        next = (event + 1) & 7;
+        return enumEngine.fire(ENUM_EVENTS[event]);
+    }
+}
@@ -0,0 +1,37 @@
+package ru.yandex.qatools.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event committed by {@link JfrTransitionListener} for each hook method invocation taking at least the
+ * threshold of the recording, the duration of the event is the duration of the invocation
+ *
+ * @author Ilya Sadykov
+ */
+@Name("ru.yandex.qatools.fsm.Hook")
+@Label("FSM Hook")
+@Category("Yatomata")
+@Description("Invocation of the FSM hook method")
+@StackTrace(false)
+@Threshold("1 ms")
+public class HookEvent extends Event {
+
+    @Label("FSM Class")
+    Class<?> fsmClass;
+
+    @Label("Hook Class")
+    Class<?> hookClass;
+
+    @Label("Hook Method")
+    String hookMethod;
+
+    @Label("Failed")
+    @Description("True if the hook method has thrown the exception")
+    boolean failed;
+}
@@ -0,0 +1,60 @@
+package ru.yandex.qatools.fsm.jfr;
+
+import jdk.jfr.Event;
+
+/**
+ * Stack of the JFR events begun but not committed yet by the thread, each kept together with the objects identifying
+ * the transition or the hook it measures. The transitions and the hooks are nested when the hooks fire the events.
+ * The transition failed with the exception is never finished, so its event is dropped once the enclosing one is
+ * finished, or once the stack is full.
+ *
+ * @author Ilya Sadykov
+ */
+final class InFlightEvents {
+
+    static final int MAX_DEPTH = 32;
+
+    private final Object[] owners = new Object[MAX_DEPTH];
+    private final Object[] keys = new Object[MAX_DEPTH];
+    private final Event[] events = new Event[MAX_DEPTH];
+    private int depth;
+
+    void push(Object owner, Object key, Event event) {
+        if (depth == MAX_DEPTH) {
+            truncate(0);
+        }
+        owners[depth] = owner;
+        keys[depth] = key;
+        events[depth] = event;
+        ++depth;
+    }
+
+    /**
+     * Removes the latest event pushed for the same owner and key together with the events pushed after it
+     *
+     * @return the event or null if there's no such event
+     */
+    Event pop(Object owner, Object key) {
+        for (int i = depth - 1; i >= 0; --i) {
+            if (owners[i] == owner && keys[i] == key) {
+                final Event event = events[i];
+                truncate(i);
+                return event;
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return depth;
+    }
+
+    private void truncate(int newDepth) {
+        for (int i = newDepth; i < depth; ++i) {
+            owners[i] = null;
+            keys[i] = null;
+            events[i] = null;
+        }
+        depth = newDepth;
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.qatools.fsm.jfr;
+
+import ru.yandex.qatools.fsm.TransitionListener;
+import ru.yandex.qatools.fsm.TransitionListenerAdapter;
+
+import java.lang.reflect.Method;
+
+/**
+ * {@link TransitionListener} committing the {@link TransitionEvent} and the {@link HookEvent} JFR events. The event
+ * is begun once the transition is resolved or the hook is entered and is ended once it is finished, so its start
+ * time and duration line up with the GC pauses and the lock contention within JMC. The events shorter than the
+ * threshold of the recording are not committed, the default threshold is 1 ms.
+ * <p/>
+ * When the events are not enabled within any running recording, the listener does nothing but the enabled check.
+ *
+ * @author Ilya Sadykov
+ */
+public class JfrTransitionListener extends TransitionListenerAdapter {
+
+    // never committed, only tell if the events are enabled within any running recording
+    private static final TransitionEvent TRANSITION_PROBE = new TransitionEvent();
+    private static final HookEvent HOOK_PROBE = new HookEvent();
+
+    private final ThreadLocal<InFlightEvents> transitions = ThreadLocal.withInitial(InFlightEvents::new);
+    private final ThreadLocal<InFlightEvents> hooks = ThreadLocal.withInitial(InFlightEvents::new);
+
+    @Override
+    public void onTransitionResolved(Object fsm, Object fromState, Object toState, Object event) {
+        if (TRANSITION_PROBE.isEnabled()) {
+            final TransitionEvent transition = new TransitionEvent();
+            transition.begin();
+            transitions.get().push(fsm, event, transition);
+        }
+    }
+
+    @Override
+    public void onTransitionFinished(Object fsm, Object fromState, Object toState, Object event, boolean applied,
+                                     long nanos) {
+        if (!TRANSITION_PROBE.isEnabled()) {
+            return;
+        }
+        final TransitionEvent transition = (TransitionEvent) transitions.get().pop(fsm, event);
+        if (transition == null) {
+            return;
+        }
+        transition.end();
+        if (transition.shouldCommit()) {
+            transition.fsmClass = fsm.getClass();
+            transition.fromState = classOf(fromState);
+            transition.toState = classOf(toState);
+            transition.eventClass = classOf(event);
+            transition.applied = applied;
+            transition.commit();
+        }
+    }
+
+    @Override
+    public void onHookStarted(Object fsm, Method hook) {
+        if (HOOK_PROBE.isEnabled()) {
+            final HookEvent event = new HookEvent();
+            event.begin();
+            hooks.get().push(fsm, hook, event);
+        }
+    }
+
+    @Override
+    public void onHookFinished(Object fsm, Method hook, long nanos, Throwable failure) {
+        if (!HOOK_PROBE.isEnabled()) {
+            return;
+        }
+        final HookEvent event = (HookEvent) hooks.get().pop(fsm, hook);
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.fsmClass = fsm.getClass();
+            event.hookClass = hook.getDeclaringClass();
+            event.hookMethod = hook.getName();
+            event.failed = failure != null;
+            event.commit();
+        }
+    }
+
+    private static Class<?> classOf(Object object) {
+        return (object == null) ? null : object.getClass();
+    }
+}
@@ -0,0 +1,40 @@
+package ru.yandex.qatools.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event committed by {@link JfrTransitionListener} for each transition taking at least the threshold of the
+ * recording, the duration of the event is the duration of the transition
+ *
+ * @author Ilya Sadykov
+ */
+@Name("ru.yandex.qatools.fsm.Transition")
+@Label("FSM Transition")
+@Category("Yatomata")
+@Description("Transition of the FSM performed by Yatomata#fire")
+@StackTrace(false)
+@Threshold("1 ms")
+public class TransitionEvent extends Event {
+
+    @Label("FSM Class")
+    Class<?> fsmClass;
+
+    @Label("From State")
+    Class<?> fromState;
+
+    @Label("To State")
+    Class<?> toState;
+
+    @Label("Event Class")
+    Class<?> eventClass;
+
+    @Label("Applied")
+    @Description("False if the transition has been rolled back by the @OnException method")
+    boolean applied;
+}
@@ -0,0 +1,127 @@
+package ru.yandex.qatools.fsm.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.FSM;
+import ru.yandex.qatools.fsm.annotations.OnTransit;
+import ru.yandex.qatools.fsm.annotations.Transit;
+import ru.yandex.qatools.fsm.annotations.Transitions;
+import ru.yandex.qatools.fsm.impl.FSMBuilder;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class JfrTransitionListenerTest {
+
+    private static final String TRANSITION = "ru.yandex.qatools.fsm.Transition";
+    private static final String HOOK = "ru.yandex.qatools.fsm.Hook";
+
+    public static class Idle {
+    }
+
+    public static class Running {
+    }
+
+    public static class Start {
+    }
+
+    public static class Stop {
+    }
+
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(from = Idle.class, on = Start.class, to = Running.class),
+            @Transit(from = Running.class, on = Stop.class, to = Idle.class)
+    })
+    public static class ListenedStateMachine {
+        @OnTransit
+        public void onStop(Stop event) {
+        }
+    }
+
+    @Test
+    public void testEventsSpanTransitionsAndHooks() throws Exception {
+        final List<RecordedEvent> events = record(recording -> {
+            recording.enable(TransitionEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(HookEvent.class).withThreshold(Duration.ZERO);
+        });
+        final List<RecordedEvent> transitions = ofType(events, TRANSITION);
+        final List<RecordedEvent> hooks = ofType(events, HOOK);
+
+        assertEquals(2, transitions.size());
+        final RecordedEvent transition = transitions.get(1);
+        assertEquals(ListenedStateMachine.class.getName(), transition.getClass("fsmClass").getName());
+        assertEquals(Running.class.getName(), transition.getClass("fromState").getName());
+        assertEquals(Idle.class.getName(), transition.getClass("toState").getName());
+        assertEquals(Stop.class.getName(), transition.getClass("eventClass").getName());
+        assertTrue(transition.getBoolean("applied"));
+
+        assertEquals(1, hooks.size());
+        final RecordedEvent hook = hooks.get(0);
+        assertEquals("onStop", hook.getString("hookMethod"));
+        assertFalse(hook.getBoolean("failed"));
+        assertFalse("Transition must begin before its hook",
+                hook.getStartTime().isBefore(transition.getStartTime()));
+        assertFalse("Transition must end after its hook", hook.getEndTime().isAfter(transition.getEndTime()));
+    }
+
+    @Test
+    public void testThresholdIsTakenFromRecording() throws Exception {
+        final List<RecordedEvent> events = record(recording -> {
+            recording.enable(TransitionEvent.class).withThreshold(Duration.ofHours(1));
+            recording.enable(HookEvent.class).withThreshold(Duration.ofHours(1));
+        });
+        assertTrue(ofType(events, TRANSITION).isEmpty());
+        assertTrue(ofType(events, HOOK).isEmpty());
+    }
+
+    @Test
+    public void testDisabledEventsAreNotRecorded() throws Exception {
+        final List<RecordedEvent> events = record(recording -> {
+            recording.enable(TransitionEvent.class).withThreshold(Duration.ZERO);
+            recording.disable(HookEvent.class);
+        });
+        assertEquals(2, ofType(events, TRANSITION).size());
+        assertTrue(ofType(events, HOOK).isEmpty());
+    }
+
+    private static List<RecordedEvent> record(Consumer<Recording> settings) throws Exception {
+        final Yatomata<ListenedStateMachine> engine = new FSMBuilder<>(ListenedStateMachine.class)
+                .withListener(new JfrTransitionListener()).build();
+        final File file = File.createTempFile("yatomata", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                settings.accept(recording);
+                recording.start();
+                engine.fire(new Start());
+                engine.fire(new Stop());
+                recording.stop();
+                recording.dump(file.toPath());
+            }
+            return RecordingFile.readAllEvents(file.toPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        final List<RecordedEvent> result = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,333 @@
+package ru.yandex.qatools.fsm.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Generates the reflection-free dispatcher for each class annotated with {@code @FSM}. The dispatcher calls
+ * the accessible hook and {@code @NewState} methods directly and instantiates the declared states with their
+ * no-arg constructors. Yatomata picks the generated class up by its name at runtime.
+ *
+ * @author Ilya Sadykov
+ */
+@SupportedAnnotationTypes(DispatcherProcessor.FSM)
+public class DispatcherProcessor extends AbstractProcessor {
+
+    static final String FSM = "ru.yandex.qatools.fsm.annotations.FSM";
+    static final String SUFFIX = "_YatomataDispatcher";
+
+    private static final String PACKAGE = "ru.yandex.qatools.fsm.annotations.";
+    private static final String TRANSITIONS = PACKAGE + "Transitions";
+    private static final String ANY = TRANSITIONS + ".ANY";
+    private static final String PREVIOUS = TRANSITIONS + ".PREVIOUS";
+    private static final List<String> METHOD_ANNOTATIONS = Arrays.asList(
+            PACKAGE + "OnTransit", PACKAGE + "BeforeTransit", PACKAGE + "AfterTransit",
+            PACKAGE + "OnException", PACKAGE + "NewState"
+    );
+    private static final int MAX_ARITY = 4;
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (TypeElement fsm : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                final String pkg = packageOf(fsm);
+                if (!isAccessible(fsm, pkg)) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                            "Skipping dispatcher generation: FSM class is not accessible from its package", fsm);
+                    continue;
+                }
+                final String name = dispatcherName(fsm, pkg);
+                if (generated.add(name)) {
+                    generate(fsm, pkg, name);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement fsm, String pkg, String name) {
+        final List<ExecutableElement> methods = collectMethods(fsm, pkg);
+        final List<TypeElement> states = collectStates(fsm, pkg);
+        final String qualifiedName = pkg.isEmpty() ? name : pkg + "." + name;
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, fsm);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                write(out, fsm, pkg, name, methods, states);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Failed to generate the dispatcher " + qualifiedName + ": " + e.getMessage(), fsm);
+        }
+    }
+
+    private void write(PrintWriter out, TypeElement fsm, String pkg, String name,
+                       List<ExecutableElement> methods, List<TypeElement> states) {
+        if (!pkg.isEmpty()) {
+            out.println("package " + pkg + ";");
+            out.println();
+        }
+        out.println("/**");
+        out.println(" * Generated by yatomata-processor for {@link " + fsm.getQualifiedName() + "}. Do not edit.");
+        out.println(" */");
+        out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+        out.println("public final class " + name + " implements ru.yandex.qatools.fsm.GeneratedDispatcher {");
+        out.println();
+        out.println("    private static final String[] METHODS = {");
+        for (ExecutableElement method : methods) {
+            out.println("            \"" + signature(method) + "\",");
+        }
+        out.println("    };");
+        out.println();
+        out.println("    @Override");
+        out.println("    public String[] getMethods() {");
+        out.println("        return METHODS;");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public Object invoke(int method, Object fsm, Object arg0, Object arg1, Object arg2, Object arg3) throws Throwable {");
+        out.println("        switch (method) {");
+        for (int i = 0; i < methods.size(); ++i) {
+            final ExecutableElement method = methods.get(i);
+            final boolean isVoid = method.getReturnType().getKind() == TypeKind.VOID;
+            out.println("            case " + i + ":");
+            out.println("                " + (isVoid ? "" : "return ") + call(fsm, method) + ";");
+            if (isVoid) {
+                out.println("                return null;");
+            }
+        }
+        out.println("            default:");
+        out.println("                throw new IllegalArgumentException(\"Unknown method index: \" + method);");
+        out.println("        }");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public Object newState(Class<?> stateClass) {");
+        for (TypeElement state : states) {
+            out.println("        if (stateClass == " + state.getQualifiedName() + ".class) {");
+            out.println("            return new " + state.getQualifiedName() + "();");
+            out.println("        }");
+        }
+        out.println("        return null;");
+        out.println("    }");
+        out.println("}");
+    }
+
+    private String call(TypeElement fsm, ExecutableElement method) {
+        final StringBuilder res = new StringBuilder();
+        if (method.getModifiers().contains(Modifier.STATIC)) {
+            res.append(((TypeElement) method.getEnclosingElement()).getQualifiedName());
+        } else {
+            res.append("((").append(processingEnv.getTypeUtils().erasure(fsm.asType())).append(") fsm)");
+        }
+        res.append('.').append(method.getSimpleName()).append('(');
+        final List<? extends VariableElement> params = method.getParameters();
+        for (int i = 0; i < params.size(); ++i) {
+            res.append((i > 0) ? ", " : "").append("(").append(erasedElement(params.get(i)).getQualifiedName())
+                    .append(") arg").append(i);
+        }
+        return res.append(')').toString();
+    }
+
+    /**
+     * Collects the annotated methods within the class hierarchy the same way Yatomata does at runtime
+     */
+    private List<ExecutableElement> collectMethods(TypeElement fsm, String pkg) {
+        final Map<String, ExecutableElement> methods = new LinkedHashMap<>();
+        TypeElement type = fsm;
+        while (type != null) {
+            for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                if (isAnnotated(method) && isCallable(method, pkg)) {
+                    final String signature = signature(method);
+                    if (!methods.containsKey(signature)) {
+                        methods.put(signature, method);
+                    }
+                }
+            }
+            type = superclassOf(type);
+        }
+        return new ArrayList<>(methods.values());
+    }
+
+    /**
+     * Collects the declared state classes which can be instantiated with the no-arg constructor
+     */
+    private List<TypeElement> collectStates(TypeElement fsm, String pkg) {
+        final Set<TypeElement> states = new LinkedHashSet<>();
+        final AnnotationMirror fsmConfig = findAnnotation(fsm, FSM);
+        if (fsmConfig != null) {
+            collectClasses(value(fsmConfig, "start"), states);
+        }
+        final AnnotationMirror transitions = findAnnotation(fsm, TRANSITIONS);
+        if (transitions != null) {
+            for (AnnotationValue transit : asList(value(transitions, "value"))) {
+                final AnnotationMirror mirror = (AnnotationMirror) transit.getValue();
+                collectClasses(value(mirror, "from"), states);
+                collectClasses(value(mirror, "to"), states);
+            }
+        }
+        final List<TypeElement> result = new ArrayList<>();
+        for (TypeElement state : states) {
+            final String name = state.getQualifiedName().toString();
+            if (!name.equals(ANY) && !name.equals(PREVIOUS) && isInstantiable(state, pkg)) {
+                result.add(state);
+            }
+        }
+        return result;
+    }
+
+    private void collectClasses(AnnotationValue value, Set<TypeElement> result) {
+        if (value == null) {
+            return;
+        }
+        for (AnnotationValue item : asList(value)) {
+            if (item.getValue() instanceof DeclaredType) {
+                result.add((TypeElement) ((DeclaredType) item.getValue()).asElement());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<AnnotationValue> asList(AnnotationValue value) {
+        return (value.getValue() instanceof List) ?
+                (List<AnnotationValue>) value.getValue() : Collections.singletonList(value);
+    }
+
+    private AnnotationValue value(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Searches for the annotation within the superclasses and interfaces like Yatomata does at runtime
+     */
+    private AnnotationMirror findAnnotation(TypeElement type, String annotation) {
+        final Deque<TypeElement> queue = new ArrayDeque<>(Collections.singleton(type));
+        while (!queue.isEmpty()) {
+            final TypeElement current = queue.poll();
+            for (AnnotationMirror mirror : current.getAnnotationMirrors()) {
+                if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation)) {
+                    return mirror;
+                }
+            }
+            for (TypeMirror iface : current.getInterfaces()) {
+                queue.add((TypeElement) ((DeclaredType) iface).asElement());
+            }
+            final TypeElement superclass = superclassOf(current);
+            if (superclass != null) {
+                queue.add(superclass);
+            }
+        }
+        return null;
+    }
+
+    private boolean isAnnotated(ExecutableElement method) {
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            final TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (METHOD_ANNOTATIONS.contains(type.getQualifiedName().toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isCallable(ExecutableElement method, String pkg) {
+        if (!isAccessible(method, (TypeElement) method.getEnclosingElement(), pkg)
+                || method.getParameters().size() > MAX_ARITY) {
+            return false;
+        }
+        for (VariableElement param : method.getParameters()) {
+            final TypeElement type = erasedElement(param);
+            if (type == null || !isAccessible(type, pkg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isInstantiable(TypeElement state, String pkg) {
+        if (state.getKind() != ElementKind.CLASS || state.getModifiers().contains(Modifier.ABSTRACT)
+                || !isAccessible(state, pkg)) {
+            return false;
+        }
+        if (state.getNestingKind() == NestingKind.MEMBER && !state.getModifiers().contains(Modifier.STATIC)) {
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(state.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getThrownTypes().isEmpty()) {
+                return isAccessible(constructor, state, pkg);
+            }
+        }
+        return false;
+    }
+
+    private boolean isAccessible(Element member, TypeElement owner, String pkg) {
+        final Set<Modifier> modifiers = member.getModifiers();
+        return !modifiers.contains(Modifier.PRIVATE) && isAccessible(owner, pkg)
+                && (modifiers.contains(Modifier.PUBLIC) || packageOf(owner).equals(pkg));
+    }
+
+    private boolean isAccessible(TypeElement type, String pkg) {
+        Element element = type;
+        while (element instanceof TypeElement) {
+            final Set<Modifier> modifiers = element.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)
+                    || (!modifiers.contains(Modifier.PUBLIC) && !packageOf(type).equals(pkg))) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private TypeElement erasedElement(VariableElement param) {
+        final TypeMirror type = processingEnv.getTypeUtils().erasure(param.asType());
+        return (type.getKind() == TypeKind.DECLARED) ? (TypeElement) ((DeclaredType) type).asElement() : null;
+    }
+
+    private TypeElement superclassOf(TypeElement type) {
+        final TypeMirror superclass = type.getSuperclass();
+        return (superclass.getKind() == TypeKind.DECLARED) ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+
+    private String signature(ExecutableElement method) {
+        final StringBuilder res = new StringBuilder(method.getSimpleName()).append('(');
+        final List<? extends VariableElement> params = method.getParameters();
+        for (int i = 0; i < params.size(); ++i) {
+            res.append((i > 0) ? "," : "").append(processingEnv.getElementUtils().getBinaryName(erasedElement(params.get(i))));
+        }
+        return res.append(')').toString();
+    }
+
+    private String dispatcherName(TypeElement fsm, String pkg) {
+        final String binaryName = processingEnv.getElementUtils().getBinaryName(fsm).toString();
+        return binaryName.substring(pkg.isEmpty() ? 0 : pkg.length() + 1).replace('$', '_') + SUFFIX;
+    }
+
+    private String packageOf(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.qatools.fsm.processor;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.GeneratedDispatcher;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.FSM;
+import ru.yandex.qatools.fsm.annotations.OnTransit;
+import ru.yandex.qatools.fsm.annotations.Transit;
+import ru.yandex.qatools.fsm.annotations.Transitions;
+import ru.yandex.qatools.fsm.impl.FSMBuilder;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class DispatcherProcessorTest {
+
+    @FSM(start = SampleStateMachine.Stopped.class)
+    @Transitions(@Transit(on = SampleStateMachine.Run.class))
+    public static class NestedStateMachine {
+        int count;
+
+        @OnTransit
+        public void onRun(SampleStateMachine.Run event) {
+            assertTrue("Hook must be called by the generated dispatcher", isCalledByDispatcher());
+            ++count;
+        }
+    }
+
+    static boolean isCalledByDispatcher() {
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            if (element.getClassName().endsWith(GeneratedDispatcher.SUFFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testDispatcherIsGenerated() throws Exception {
+        Class<?> dispatcherClass = Class.forName(SampleStateMachine.class.getName() + GeneratedDispatcher.SUFFIX);
+        GeneratedDispatcher dispatcher = (GeneratedDispatcher) dispatcherClass.newInstance();
+        assertEquals(Arrays.asList(
+                "beforeTransit(ru.yandex.qatools.fsm.processor.SampleStateMachine$State,java.lang.Object)",
+                "onRun(ru.yandex.qatools.fsm.processor.SampleStateMachine$Stopped,ru.yandex.qatools.fsm.processor.SampleStateMachine$Running,ru.yandex.qatools.fsm.processor.SampleStateMachine$Run)",
+                "onStop(ru.yandex.qatools.fsm.processor.SampleStateMachine$Running,ru.yandex.qatools.fsm.processor.SampleStateMachine$Stop)",
+                "onFail(ru.yandex.qatools.fsm.processor.SampleStateMachine$Running,ru.yandex.qatools.fsm.processor.SampleStateMachine$Fail)",
+                "onException(java.lang.IllegalStateException,ru.yandex.qatools.fsm.processor.SampleStateMachine$Running)",
+                "afterTransit(java.lang.Object)"
+        ), Arrays.asList(dispatcher.getMethods()));
+        assertThat(dispatcher.newState(SampleStateMachine.Running.class), instanceOf(SampleStateMachine.Running.class));
+        assertNull(dispatcher.newState(SampleStateMachine.State.class));
+    }
+
+    @Test
+    public void testHooksAreCalledByDispatcher() {
+        Yatomata<SampleStateMachine> engine = new FSMBuilder<>(SampleStateMachine.class).build();
+        assertTrue(((SampleStateMachine.State) engine.getCurrentState()).createdByDispatcher);
+        assertThat(engine.fire(new SampleStateMachine.Run()), instanceOf(SampleStateMachine.Running.class));
+        assertTrue(((SampleStateMachine.State) engine.getCurrentState()).createdByDispatcher);
+        engine.fire(new SampleStateMachine.Fail());
+        engine.fire(new SampleStateMachine.Stop());
+        assertTrue(engine.isCompleted());
+
+        SampleStateMachine fsm = engine.getFSM();
+        assertEquals(Arrays.asList("before", "run", "after", "before", "exception", "before", "stop", "after"), fsm.calls);
+        assertFalse("Hooks must be called by the generated dispatcher", fsm.callsByDispatcher.contains(false));
+    }
+
+    @Test
+    public void testNestedFsmDispatcher() throws Exception {
+        Class.forName(getClass().getName().replace("DispatcherProcessorTest",
+                "DispatcherProcessorTest_NestedStateMachine" + GeneratedDispatcher.SUFFIX));
+        Yatomata<NestedStateMachine> engine = new FSMBuilder<>(NestedStateMachine.class).build();
+        engine.fire(new SampleStateMachine.Run());
+        engine.fire(new SampleStateMachine.Run());
+        assertEquals(2, engine.getFSM().count);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.qatools.fsm.processor;
+
+import ru.yandex.qatools.fsm.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Ilya Sadykov
+ */
+@FSM(start = SampleStateMachine.Stopped.class)
+@Transitions({
+        @Transit(from = SampleStateMachine.Stopped.class, on = SampleStateMachine.Run.class, to = SampleStateMachine.Running.class),
+        @Transit(from = SampleStateMachine.Running.class, on = SampleStateMachine.Stop.class, to = SampleStateMachine.Stopped.class, stop = true),
+        @Transit(from = SampleStateMachine.Running.class, on = SampleStateMachine.Fail.class)
+})
+public class SampleStateMachine {
+
+    public static class State {
+        final boolean createdByDispatcher = DispatcherProcessorTest.isCalledByDispatcher();
+    }
+
+    public static class Stopped extends State {
+    }
+
+    public static class Running extends State {
+    }
+
+    public static class Run {
+    }
+
+    public static class Stop {
+    }
+
+    public static class Fail {
+    }
+
+    final List<String> calls = new ArrayList<>();
+    final List<Boolean> callsByDispatcher = new ArrayList<>();
+
+    @BeforeTransit
+    public void beforeTransit(State from, Object event) {
+        record("before");
+    }
+
+    @OnTransit
+    public void onRun(Stopped from, Running to, Run event) {
+        record("run");
+    }
+
+    @OnTransit
+    void onStop(@FromState Running from, @Event Stop event) {
+        record("stop");
+    }
+
+    @OnTransit
+    public void onFail(Running from, Fail event) {
+        throw new IllegalStateException("failure");
+    }
+
+    @OnException(preserve = true)
+    public void onException(IllegalStateException e, Running state) {
+        record("exception");
+    }
+
+    @AfterTransit
+    void afterTransit(Object event) {
+        record("after");
+    }
+
+    private void record(String call) {
+        calls.add(call);
+        callsByDispatcher.add(DispatcherProcessorTest.isCalledByDispatcher());
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.qatools.fsm;
+
+/**
+ * Outcome of the batch of events fired into the state machine
+ *
+ * @author Ilya Sadykov
+ */
+public final class FireResult {
+    private final Object state;
+    private final int applied;
+    private final int ignored;
+
+    public FireResult(Object state, int applied, int ignored) {
+        this.state = state;
+        this.applied = applied;
+        this.ignored = ignored;
+    }
+
+    /**
+     * Returns the state of the FSM after the batch
+     */
+    public Object getState() {
+        return state;
+    }
+
+    /**
+     * Returns the number of events which have caused the transition
+     */
+    public int getApplied() {
+        return applied;
+    }
+
+    /**
+     * Returns the number of events ignored because there was no transition for them, the null events are not counted
+     */
+    public int getIgnored() {
+        return ignored;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FireResult{state=%s, applied=%d, ignored=%d}", state, applied, ignored);
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.qatools.fsm;
+
+/**
+ * Reflection-free dispatcher generated at compile time for the FSM class by the yatomata-processor.
+ * Yatomata looks for the class named as the FSM class (nested class names joined with '_') followed by
+ * the {@link #SUFFIX} within the same package and uses it to call the hook methods and to instantiate
+ * the states. If there is no such class, the reflective invocation is used.
+ *
+ * @author Ilya Sadykov
+ */
+public interface GeneratedDispatcher {
+
+    /**
+     * Suffix of the generated dispatcher class name
+     */
+    String SUFFIX = "_YatomataDispatcher";
+
+    /**
+     * Returns the signatures of the methods that can be invoked by this dispatcher in the form
+     * {@code name(binary.name.of.Param1,binary.name.of.Param2)}. The index of the signature is used
+     * as the method identifier for {@link #invoke}
+     */
+    String[] getMethods();
+
+    /**
+     * Invokes the method with the defined index on the FSM instance. Unused arguments are ignored
+     */
+    Object invoke(int method, Object fsm, Object arg0, Object arg1, Object arg2, Object arg3) throws Throwable;
+
+    /**
+     * Creates the new instance of the state class or returns null if this state cannot be created by the dispatcher
+     */
+    Object newState(Class<?> stateClass);
+}
@@ -0,0 +1,23 @@
+package ru.yandex.qatools.fsm;
+
+/**
+ * Implement this interface by the state class to recycle its instances: once the engine leaves the state, the instance
+ * is reset and kept in the pool of the FSM class, so the next transition to this state class takes it from the pool
+ * instead of creating the new one. The left state is recycled right within the {@code fire()} leaving it, so neither the
+ * hook methods nor the callers of the engine may keep the references to the states: the state returned by
+ * {@code fire()} or {@code getCurrentState()} is valid only until the next {@code fire()} of the same engine, after
+ * that it may be reset and reused by any engine of the FSM class. Copy the data out of the state to keep it.
+ * <p/>
+ * The states created by the FSM itself are never pooled: the states of the FSM having the @NewState methods and
+ * the states of the classes having the factory within the FSM definition.
+ *
+ * @author Ilya Sadykov
+ */
+public interface PoolableState {
+
+    /**
+     * Method is called when the state is returned to the pool, it must bring the state to the same condition as
+     * the newly created one
+     */
+    void reset();
+}
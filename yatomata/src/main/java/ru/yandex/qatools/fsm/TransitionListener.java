@@ -0,0 +1,57 @@
+package ru.yandex.qatools.fsm;
+
+import java.lang.reflect.Method;
+
+/**
+ * Receives the notifications about the transitions of the FSM engine it is attached to. Methods are called
+ * synchronously within {@link Yatomata#fire(Object)}, so they must be fast and must not throw. The same listener
+ * may be attached to many engines working within different threads.
+ *
+ * @author Ilya Sadykov
+ */
+public interface TransitionListener {
+
+    /**
+     * Called when the transition for the event is found, before the hook methods are called
+     */
+    void onTransitionResolved(Object fsm, Object fromState, Object toState, Object event);
+
+    /**
+     * Called when there's no transition for the event and it is ignored
+     */
+    void onEventIgnored(Object fsm, Object state, Object event);
+
+    /**
+     * Called right before the hook method is invoked
+     */
+    void onHookStarted(Object fsm, Method hook);
+
+    /**
+     * Called right after the hook method is invoked
+     *
+     * @param failure the exception thrown by the hook or null
+     */
+    void onHookFinished(Object fsm, Method hook, long nanos, Throwable failure);
+
+    /**
+     * Called when the exception thrown by the hook method is handled by the @OnException method
+     *
+     * @param preserved true if the transition is preserved, false if it is rolled back
+     */
+    void onExceptionHandled(Object fsm, Object fromState, Object toState, Object event, Throwable e,
+                            boolean preserved);
+
+    /**
+     * Called when the transition is finished
+     *
+     * @param applied false if the transition is rolled back
+     * @param nanos   time spent since the transition has been resolved
+     */
+    void onTransitionFinished(Object fsm, Object fromState, Object toState, Object event, boolean applied,
+                              long nanos);
+
+    /**
+     * Called when the FSM gets completed
+     */
+    void onCompleted(Object fsm, Object state, Object event);
+}
@@ -0,0 +1,41 @@
+package ru.yandex.qatools.fsm;
+
+import java.lang.reflect.Method;
+
+/**
+ * {@link TransitionListener} ignoring all the notifications. Extend it to override only the required methods.
+ *
+ * @author Ilya Sadykov
+ */
+public abstract class TransitionListenerAdapter implements TransitionListener {
+
+    @Override
+    public void onTransitionResolved(Object fsm, Object fromState, Object toState, Object event) {
+    }
+
+    @Override
+    public void onEventIgnored(Object fsm, Object state, Object event) {
+    }
+
+    @Override
+    public void onHookStarted(Object fsm, Method hook) {
+    }
+
+    @Override
+    public void onHookFinished(Object fsm, Method hook, long nanos, Throwable failure) {
+    }
+
+    @Override
+    public void onExceptionHandled(Object fsm, Object fromState, Object toState, Object event, Throwable e,
+                                   boolean preserved) {
+    }
+
+    @Override
+    public void onTransitionFinished(Object fsm, Object fromState, Object toState, Object event, boolean applied,
+                                     long nanos) {
+    }
+
+    @Override
+    public void onCompleted(Object fsm, Object state, Object event) {
+    }
+}
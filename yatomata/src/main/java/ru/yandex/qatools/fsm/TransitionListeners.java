@@ -0,0 +1,101 @@
+package ru.yandex.qatools.fsm;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Combines the {@link TransitionListener}s, so the statistics, the MXBeans and the JFR events can be attached to
+ * the same engines.
+ *
+ * @author Ilya Sadykov
+ */
+public final class TransitionListeners {
+
+    private TransitionListeners() {
+    }
+
+    /**
+     * Returns the listener passing each notification to all the listeners in the order they are listed. The null
+     * listeners are skipped, the composed listeners are flattened. Returns null if there are no listeners and the
+     * listener itself if there's only one.
+     */
+    public static TransitionListener compose(TransitionListener... listeners) {
+        final List<TransitionListener> result = new ArrayList<>(listeners.length);
+        for (TransitionListener listener : listeners) {
+            if (listener instanceof Composite) {
+                result.addAll(Arrays.asList(((Composite) listener).listeners));
+            } else if (listener != null) {
+                result.add(listener);
+            }
+        }
+        switch (result.size()) {
+            case 0:
+                return null;
+            case 1:
+                return result.get(0);
+            default:
+                return new Composite(result.toArray(new TransitionListener[result.size()]));
+        }
+    }
+
+    private static final class Composite implements TransitionListener {
+        private final TransitionListener[] listeners;
+
+        private Composite(TransitionListener[] listeners) {
+            this.listeners = listeners;
+        }
+
+        @Override
+        public void onTransitionResolved(Object fsm, Object fromState, Object toState, Object event) {
+            for (TransitionListener listener : listeners) {
+                listener.onTransitionResolved(fsm, fromState, toState, event);
+            }
+        }
+
+        @Override
+        public void onEventIgnored(Object fsm, Object state, Object event) {
+            for (TransitionListener listener : listeners) {
+                listener.onEventIgnored(fsm, state, event);
+            }
+        }
+
+        @Override
+        public void onHookStarted(Object fsm, Method hook) {
+            for (TransitionListener listener : listeners) {
+                listener.onHookStarted(fsm, hook);
+            }
+        }
+
+        @Override
+        public void onHookFinished(Object fsm, Method hook, long nanos, Throwable failure) {
+            for (TransitionListener listener : listeners) {
+                listener.onHookFinished(fsm, hook, nanos, failure);
+            }
+        }
+
+        @Override
+        public void onExceptionHandled(Object fsm, Object fromState, Object toState, Object event, Throwable e,
+                                       boolean preserved) {
+            for (TransitionListener listener : listeners) {
+                listener.onExceptionHandled(fsm, fromState, toState, event, e, preserved);
+            }
+        }
+
+        @Override
+        public void onTransitionFinished(Object fsm, Object fromState, Object toState, Object event, boolean applied,
+                                         long nanos) {
+            for (TransitionListener listener : listeners) {
+                listener.onTransitionFinished(fsm, fromState, toState, event, applied, nanos);
+            }
+        }
+
+        @Override
+        public void onCompleted(Object fsm, Object state, Object event) {
+            for (TransitionListener listener : listeners) {
+                listener.onCompleted(fsm, state, event);
+            }
+        }
+    }
+}
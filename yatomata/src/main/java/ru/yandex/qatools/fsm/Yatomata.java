@@ -25,6 +25,13 @@ public interface Yatomata<T> {
      */
     Object fire(Object event);
 
+    /**
+     * Fires the events into the state machine in order. Stops once the FSM gets completed, so the rest of the events
+     * are neither applied nor ignored. The null events are skipped the same way as {@link #fire(Object)} skips them,
+     * so they are neither applied nor ignored too.
+     */
+    FireResult fireAll(Iterable<?> events);
+
     /**
      * Returns the internal FSM instance
      */
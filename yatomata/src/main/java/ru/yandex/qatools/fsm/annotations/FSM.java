@@ -0,0 +1,43 @@
+package ru.yandex.qatools.fsm.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+
+/**
+ * Marks class as container for FSM transition event handlers. Each event handler is a method marked
+ * with {@link OnTransit} annotation.
+ *
+ * @author Ilya Sadykov
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({TYPE})
+public @interface FSM {
+
+    /**
+     * Initial FSM state
+     *
+     * @return class of initial FSM state
+     */
+    Class start();
+
+    /**
+     * Share the instances of the state classes without instance fields between all the engines of this FSM class,
+     * the same way as the state classes marked with {@link SharedState} are shared
+     *
+     * @return true if the states without instance fields must be shared
+     */
+    boolean sharedStates() default false;
+
+    /**
+     * Share the single instance of the FSM class between all the engines built by the same
+     * {@link ru.yandex.qatools.fsm.impl.FSMBuilder} instead of instantiating it per engine. The FSM class must not
+     * have instance fields, so all the data of the engine is kept by its states.
+     *
+     * @return true if the FSM instance must be shared
+     */
+    boolean sharedHandler() default false;
+
+}
@@ -0,0 +1,27 @@
+package ru.yandex.qatools.fsm.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+
+/**
+ * Marks the state class which instances carry no data, so the single instance can be shared by all the engines
+ * of each FSM class. The shared instance is created once with the no-arg constructor, the {@link NewState} methods
+ * are not called for it. All the engines of the FSM class transiting to this state get the same object,
+ * so it must not be modified by the hook methods.
+ * <pre>
+ * <code>
+ * {@literal @}SharedState
+ * public class Idle {
+ * }
+ * </code>
+ * </pre>
+ *
+ * @author Ilya Sadykov
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({TYPE})
+public @interface SharedState {
+}
@@ -0,0 +1,154 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.FSMException;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * @author Ilya Sadykov (mailto: smecsia@yandex-team.ru)
+ */
+class BestMatchedAnnotatedMethodCaller {
+
+    private final Object instance;
+    private final Metadata.ClassInfo cache;
+
+    public BestMatchedAnnotatedMethodCaller(Object instance, Metadata.ClassInfo cache) {
+        this.cache = cache;
+        this.instance = instance;
+    }
+
+    public Collection<Method> call(Class<? extends Annotation> annClass, boolean singleCall, ParametersProvider parametersProvider) throws Throwable {
+        return cache.getCallPlan(annClass, singleCall, parametersProvider).execute(instance, parametersProvider.getSlots());
+    }
+
+    /**
+     * Searches for the best matching methods annotated with the annotation for the provided parameters and
+     * returns them in the order they must be invoked
+     */
+    static CallPlan plan(Metadata.ClassInfo cache, Class<? extends Annotation> annClass, boolean singleCall,
+                         ParametersProvider parametersProvider) throws FSMException {
+        final Map<Method, int[]> called = new LinkedHashMap<>();
+        final Planner planner = new Planner(cache, parametersProvider);
+        planner.callMethodsWithAnnotatedParameters(annClass, called);
+        planner.call(annClass, parametersProvider.provide(), singleCall, called);
+        final HookInvoker[] invokers = new HookInvoker[called.size()];
+        final int[][] bindings = new int[called.size()][];
+        int i = 0;
+        for (Map.Entry<Method, int[]> entry : called.entrySet()) {
+            invokers[i] = cache.getInvoker(entry.getKey());
+            bindings[i++] = entry.getValue();
+        }
+        return new CallPlan(invokers, bindings);
+    }
+
+    private static class Planner {
+        private final Metadata.ClassInfo cache;
+        private final ParametersProvider parametersProvider;
+
+        private Planner(Metadata.ClassInfo cache, ParametersProvider parametersProvider) {
+            this.cache = cache;
+            this.parametersProvider = parametersProvider;
+        }
+
+        private void callMethodsWithAnnotatedParameters(Class<? extends Annotation> annClass, Map<Method, int[]> called) throws FSMException {
+            for (Method method : cache.getAnnotatedMethods(annClass)) {
+                int[] binding = cache.getParameterBinding(method).bind(parametersProvider.getSlots());
+                if (binding != null && !called.containsKey(method)) {
+                    called.put(method, binding);
+                }
+            }
+        }
+
+        private void call(Class<? extends Annotation> annClass, List<Integer> params, boolean singleCall, Map<Method, int[]> called) throws FSMException {
+            final List<Class<?>> paramTypes = new ArrayList<>();
+            for (Integer slot : params) {
+                paramTypes.add(parametersProvider.getSlotClass(slot));
+            }
+            call(annClass, paramTypes, params, new Stack<Class<?>>(), singleCall, called);
+        }
+
+        private void call(Class<? extends Annotation> annClass,
+                          List<Class<?>> paramTypes,
+                          List<Integer> params, Stack<Class<?>> typesStack, boolean singleCall, Map<Method, int[]> called) throws FSMException {
+            if (!called.isEmpty() && singleCall) {
+                return;
+            }
+            if (params.isEmpty()) {
+                throw new FSMException("Failed to invoke methods annotated with @" + annClass + ": parameters are empty!");
+            }
+            if (typesStack.size() >= paramTypes.size()) {
+                findSuitableMethodAndCall(annClass, paramTypes, params, typesStack, singleCall, called);
+            } else {
+                final int pIdx = typesStack.size() > 0 ? typesStack.size() : 0;
+                for (Class clazz : ClassHierarchy.get(paramTypes.get(pIdx))) {
+                    typesStack.push(clazz);
+                    findSuitableMethodAndCall(annClass, paramTypes, params, typesStack, singleCall, called);
+                    typesStack.pop();
+                    if (!called.isEmpty() && singleCall) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void findSuitableMethodAndCall(Class<? extends Annotation> annClass, List<Class<?>> paramTypes,
+                                               List<Integer> params, Stack<Class<?>> types,
+                                               boolean singleCall, Map<Method, int[]> called) throws FSMException {
+            for (Method method : cache.getAnnotatedMethods(annClass)) {
+                final List<Class> mParamTypes =
+                        Arrays.<Class>asList(cache.getParameterBinding(method).getParameterTypes());
+                // trying to call the full-arguments method
+                if (checkMethodParams(mParamTypes, types)) {
+                    callMethod(method, types, params.subList(0, types.size()), called);
+                    if (!called.isEmpty() && singleCall) {
+                        return;
+                    }
+                }
+                // trying to apply the partial call if method has less arguments, i.e. (A, B, C, D) -> (A, B, C) || (A, B) || (B, C, D) || (B, C) || (C, D) || (B) || (C) || (D)
+                if (mParamTypes.size() < types.size()) {
+                    for (int j = types.size(); j > 0; --j) {
+                        final List<Class<?>> partTypes = types.subList(0, j);
+                        for (int i = 1; i < partTypes.size(); ++i) {
+                            final List<Class<?>> typesSublist = partTypes.subList(i, partTypes.size());
+                            if (mParamTypes.size() == typesSublist.size() && checkMethodParams(mParamTypes, typesSublist)) {
+                                callMethod(method, typesSublist, params.subList(i, i + typesSublist.size()), called);
+                                if (!called.isEmpty() && singleCall) {
+                                    return;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            // if there are still some arguments to be checked
+            if (types.size() < params.size()) {
+                call(annClass, paramTypes, params, types, singleCall, called);
+            }
+        }
+
+        private void callMethod(Method method, List<Class<?>> types, List<Integer> params, Map<Method, int[]> called) {
+            if (types.size() == cache.getParameterBinding(method).getParameterTypes().length &&
+                    !called.containsKey(method)) {
+                final int[] binding = new int[params.size()];
+                for (int i = 0; i < binding.length; ++i) {
+                    binding[i] = params.get(i);
+                }
+                called.put(method, binding);
+            }
+        }
+
+        private boolean checkMethodParams(List<Class> paramTypes, List<Class<?>> types) {
+            if (types.size() > paramTypes.size()) {
+                return false;
+            }
+            for (int i = 0; i < types.size(); ++i) {
+                if (!paramTypes.get(i).equals(types.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.TransitionListener;
+import ru.yandex.qatools.fsm.annotations.OnException;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered list of the hook methods resolved by {@link BestMatchedAnnotatedMethodCaller} for a tuple of runtime
+ * classes of the transition arguments. Each hook has the binding which maps its parameters to the argument
+ * slots provided by {@link ParametersProvider}.
+ *
+ * @author Ilya Sadykov
+ */
+class CallPlan {
+
+    private final HookInvoker[] invokers;
+    private final int[][] bindings;
+    private final List<Method> methods;
+    private final boolean preserving;
+
+    CallPlan(HookInvoker[] invokers, int[][] bindings) {
+        this.invokers = invokers;
+        this.bindings = bindings;
+        final Method[] methods = new Method[invokers.length];
+        boolean preserving = false;
+        for (int i = 0; i < invokers.length; ++i) {
+            methods[i] = invokers[i].getMethod();
+            final OnException onException = methods[i].getAnnotation(OnException.class);
+            preserving = preserving || (onException != null && onException.preserve());
+        }
+        this.methods = Collections.unmodifiableList(Arrays.asList(methods));
+        this.preserving = preserving;
+    }
+
+    /**
+     * Invokes all the planned methods on the target in order
+     *
+     * @return the list of the invoked methods
+     */
+    public List<Method> execute(Object target, Object[] slots) throws Throwable {
+        for (int i = 0; i < invokers.length; ++i) {
+            invokers[i].invoke(target, slots, bindings[i]);
+        }
+        return methods;
+    }
+
+    /**
+     * Invokes all the planned methods on the target in order notifying the listener about each of them
+     *
+     * @return the list of the invoked methods
+     */
+    public List<Method> execute(Object target, Object[] slots, TransitionListener listener) throws Throwable {
+        for (int i = 0; i < invokers.length; ++i) {
+            final Method method = invokers[i].getMethod();
+            listener.onHookStarted(target, method);
+            final long start = System.nanoTime();
+            try {
+                invokers[i].invoke(target, slots, bindings[i]);
+            } catch (Throwable e) {
+                listener.onHookFinished(target, method, System.nanoTime() - start, e);
+                throw e;
+            }
+            listener.onHookFinished(target, method, System.nanoTime() - start, null);
+        }
+        return methods;
+    }
+
+    public List<Method> getMethods() {
+        return methods;
+    }
+
+    /**
+     * Checks if any of the planned methods is the @OnException method preserving the transition
+     */
+    public boolean isPreserving() {
+        return preserving;
+    }
+
+    public boolean isEmpty() {
+        return invokers.length == 0;
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.qatools.fsm.impl;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide cache of the class hierarchies: the class, its superclasses and interfaces in the defined order
+ * Class -> its interfaces -> superclass -> its interfaces -> superclass of a superclass -> ...
+ * Each class is listed once, at the first position it is reachable at. Each hierarchy is built from the cached
+ * hierarchies of the direct supertypes, so the supertypes shared by many classes are scanned once.
+ * <p/>
+ * The cached arrays are shared by all the FSM classes, so only the metadata reads them directly, the public
+ * methods return the copies.
+ *
+ * @author Ilya Sadykov
+ */
+public final class ClassHierarchy {
+
+    private static final AtomicInteger CACHED_COUNT = new AtomicInteger();
+
+    private static final ClassValue<Class[]> HIERARCHIES = new ClassValue<Class[]>() {
+        @Override
+        protected Class[] computeValue(Class<?> clazz) {
+            final Set<Class> result = new LinkedHashSet<>();
+            result.add(clazz);
+            for (Class iface : clazz.getInterfaces()) {
+                Collections.addAll(result, get(iface));
+            }
+            if (clazz.getSuperclass() != null) {
+                Collections.addAll(result, get(clazz.getSuperclass()));
+            }
+            CACHED_COUNT.incrementAndGet();
+            return result.toArray(new Class[result.size()]);
+        }
+    };
+
+    private ClassHierarchy() {
+    }
+
+    /**
+     * Returns the copy of the cached class, its superclasses and interfaces
+     */
+    public static Class[] getSuperclassesAndInterfaces(Class clazz) {
+        return get(clazz).clone();
+    }
+
+    /**
+     * Returns the number of the classes with the cached hierarchies, the classes unloaded since then are counted
+     * as well
+     */
+    public static int getCachedCount() {
+        return CACHED_COUNT.get();
+    }
+
+    /**
+     * Returns the cached array itself, it must not be modified
+     */
+    static Class[] get(Class clazz) {
+        return HIERARCHIES.get(clazz);
+    }
+}
@@ -0,0 +1,147 @@
+package ru.yandex.qatools.fsm.impl;
+
+/**
+ * Cache keyed by a tuple of up to four classes (unused positions are {@code null}).
+ * Readers never lock and never allocate: the lookup is a single open-addressing probe over an immutable
+ * table published through a volatile field. Writers copy the table under the instance lock, which is fine
+ * since the number of distinct runtime class tuples is small and each of them is written only once.
+ * If the cache is bounded, it is emptied once the number of the tuples reaches the bound, so the caches of the
+ * values that are cheap to compute again do not grow with every generated or proxy class seen.
+ *
+ * @author Ilya Sadykov
+ */
+class ClassTupleCache<V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxSize;
+    private volatile Entry<V>[] table = newTable(INITIAL_CAPACITY);
+    private int size;
+    private long evictions;
+
+    /**
+     * Creates the unbounded cache
+     */
+    public ClassTupleCache() {
+        this(0);
+    }
+
+    /**
+     * Creates the cache keeping up to maxSize tuples, 0 means unbounded
+     */
+    public ClassTupleCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public V get(Class k1, Class k2) {
+        return get(k1, k2, null, null);
+    }
+
+    public V get(Class k1, Class k2, Class k3, Class k4) {
+        final Entry<V>[] tab = table;
+        final int hash = hash(k1, k2, k3, k4);
+        final int mask = tab.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            final Entry<V> e = tab[i];
+            if (e == null) {
+                return null;
+            }
+            if (e.hash == hash && e.matches(k1, k2, k3, k4)) {
+                return e.value;
+            }
+        }
+    }
+
+    public V putIfAbsent(Class k1, Class k2, V value) {
+        return putIfAbsent(k1, k2, null, null, value);
+    }
+
+    /**
+     * Stores the value unless there is one already and returns the value which is actually cached
+     */
+    public synchronized V putIfAbsent(Class k1, Class k2, Class k3, Class k4, V value) {
+        final V existing = get(k1, k2, k3, k4);
+        if (existing != null) {
+            return existing;
+        }
+        Entry<V>[] tab = table;
+        if (maxSize > 0 && size >= maxSize) {
+            tab = newTable(INITIAL_CAPACITY);
+            size = 0;
+            ++evictions;
+        } else if ((size + 1) * 2 > tab.length) {
+            tab = rehash(tab, tab.length * 2);
+        } else {
+            tab = tab.clone();
+        }
+        insert(tab, new Entry<>(k1, k2, k3, k4, hash(k1, k2, k3, k4), value));
+        ++size;
+        table = tab;
+        return value;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns how many times the bounded cache has been emptied
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private static <V> Entry<V>[] rehash(Entry<V>[] tab, int capacity) {
+        final Entry<V>[] res = newTable(capacity);
+        for (Entry<V> e : tab) {
+            if (e != null) {
+                insert(res, e);
+            }
+        }
+        return res;
+    }
+
+    private static <V> void insert(Entry<V>[] tab, Entry<V> entry) {
+        final int mask = tab.length - 1;
+        int i = entry.hash & mask;
+        while (tab[i] != null) {
+            i = (i + 1) & mask;
+        }
+        tab[i] = entry;
+    }
+
+    private static int hash(Class k1, Class k2, Class k3, Class k4) {
+        int h = System.identityHashCode(k1);
+        h = 31 * h + System.identityHashCode(k2);
+        h = 31 * h + System.identityHashCode(k3);
+        h = 31 * h + System.identityHashCode(k4);
+        return h ^ (h >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Entry<V>[] newTable(int capacity) {
+        return new Entry[capacity];
+    }
+
+    private static final class Entry<V> {
+        private final Class k1;
+        private final Class k2;
+        private final Class k3;
+        private final Class k4;
+        private final int hash;
+        private final V value;
+
+        private Entry(Class k1, Class k2, Class k3, Class k4, int hash, V value) {
+            this.k1 = k1;
+            this.k2 = k2;
+            this.k3 = k3;
+            this.k4 = k4;
+            this.hash = hash;
+            this.value = value;
+        }
+
+        private boolean matches(Class k1, Class k2, Class k3, Class k4) {
+            return this.k1 == k1 && this.k2 == k2 && this.k3 == k3 && this.k4 == k4;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.TransitionListener;
+import ru.yandex.qatools.fsm.TransitionListeners;
+import ru.yandex.qatools.fsm.Yatomata;
+
+/**
+ * Builds the engines of the {@link EnumFSMDefinition}
+ *
+ * @author Ilya Sadykov
+ */
+public class EnumFSMBuilder<T, S extends Enum<S>, E extends Enum<E>> implements Yatomata.Builder<T> {
+    private final EnumFSMDefinition<T, S, E> definition;
+    private T instance;
+    private TransitionListener listener;
+
+    /**
+     * Create FSM from the definition, the handler class must have the no-arg constructor
+     * @param definition FSM definition
+     */
+    public EnumFSMBuilder(EnumFSMDefinition<T, S, E> definition) {
+        this.definition = definition;
+    }
+
+    /**
+     * Create FSM from the definition with already instantiated handler
+     * @param definition FSM definition
+     * @param instance FSM handler passed to the hooks
+     */
+    public EnumFSMBuilder(EnumFSMDefinition<T, S, E> definition, T instance) {
+        this.definition = definition;
+        this.instance = instance;
+    }
+
+    /**
+     * Attach the listener to all the FSM engines built by this builder. The listeners attached by the repeated
+     * calls are all notified in the order of attachment (see {@link TransitionListeners#compose})
+     * @param listener transition listener
+     */
+    public EnumFSMBuilder<T, S, E> withListener(TransitionListener listener) {
+        this.listener = TransitionListeners.compose(this.listener, listener);
+        return this;
+    }
+
+    /**
+     * Build the new FSM engine with the start state of the definition
+     */
+    @Override
+    public EnumYatomata<T, S, E> build() {
+        return build(null);
+    }
+
+    /**
+     * Build the new FSM engine with the defined state, which must be the constant of the state enum
+     */
+    @Override
+    public EnumYatomata<T, S, E> build(Object state) {
+        final S initial = (state != null) ? definition.getStateClass().cast(state) : definition.getStartState();
+        try {
+            final T inst = (instance != null) ? instance : definition.getFSMClass().newInstance();
+            return new EnumYatomata<>(definition, inst, initial, listener);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not initialize the FSM Engine for FSM " + definition.getFSMClass(), e);
+        }
+    }
+}
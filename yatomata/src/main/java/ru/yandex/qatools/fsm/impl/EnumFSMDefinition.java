@@ -0,0 +1,350 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.TransitionListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * FSM with the states and the events being the constants of the state enum and the event enum. The transitions are
+ * compiled into the table indexed by the ordinals of the state and the event, so the engine built by
+ * {@link EnumFSMBuilder} keeps its state as a byte and resolves the transition by the array lookup without
+ * allocating anything:
+ * <pre>
+ * EnumFSMDefinition&lt;Handler, State, Event&gt; definition =
+ *         EnumFSMDefinition.builder(Handler.class, State.class, Event.class)
+ *     .start(State.IDLE)
+ *     .transit(State.IDLE, Event.START, State.RUNNING)
+ *     .transit(State.RUNNING, Event.COMPLETE, State.COMPLETED, true)
+ *     .onTransit(State.IDLE, Event.START, State.RUNNING, hook)
+ *     .build();
+ * EnumYatomata&lt;Handler, State, Event&gt; engine = new EnumFSMBuilder&lt;&gt;(definition, handler).build();
+ * </pre>
+ * The hooks are the same {@link FSMDefinition.TransitionHook} and {@link FSMDefinition.ExceptionHook} receiving the
+ * enum constants. Each hook is registered for the constants of the states and the event, null matching any constant:
+ * all the matching before and after hooks are called in the order of registration, while only the first matching on
+ * and exception hook is called. The definition is immutable and can be shared by any number of engines and threads.
+ *
+ * @author Ilya Sadykov
+ */
+public final class EnumFSMDefinition<T, S extends Enum<S>, E extends Enum<E>> {
+
+    /**
+     * Maximal number of the state constants, so the ordinal of the state fits into the byte
+     */
+    public static final int MAX_STATES = Byte.MAX_VALUE + 1;
+
+    private static final FSMDefinition.DefinedHook[] NO_HOOKS = new FSMDefinition.DefinedHook[0];
+
+    private final Class<T> fsmClass;
+    private final Class<S> stateClass;
+    private final Class<E> eventClass;
+    private final S[] states;
+    private final int eventsCount;
+    private final S startState;
+    private final Cell[] cells;
+    private final FSMDefinition.DefinedHook[] exceptionHooks;
+
+    private EnumFSMDefinition(Builder<T, S, E> builder) {
+        this.fsmClass = builder.fsmClass;
+        this.stateClass = builder.stateClass;
+        this.eventClass = builder.eventClass;
+        this.states = builder.states;
+        this.eventsCount = builder.events.length;
+        this.startState = builder.startState;
+        this.exceptionHooks = FSMDefinition.toArray(builder.exceptionHooks);
+        this.cells = new Cell[states.length * eventsCount];
+        for (int i = 0; i < cells.length; ++i) {
+            final TransitionEntry transition = builder.table[i];
+            if (transition != null) {
+                final S from = states[i / eventsCount];
+                final E on = builder.events[i % eventsCount];
+                final S to = states[transition.to.ordinal()];
+                cells[i] = new Cell(to, transition.stop,
+                        matching(builder.beforeHooks, from, on, to, false),
+                        matching(builder.onHooks, from, on, to, true),
+                        matching(builder.afterHooks, from, on, to, false));
+            }
+        }
+    }
+
+    /**
+     * Starts the definition of the FSM with the handler of the defined class passed to the hooks
+     */
+    public static <T, S extends Enum<S>, E extends Enum<E>> Builder<T, S, E> builder(
+            Class<T> fsmClass, Class<S> stateClass, Class<E> eventClass) {
+        return new Builder<>(fsmClass, stateClass, eventClass);
+    }
+
+    /**
+     * Returns the class of the FSM handler
+     */
+    public Class<T> getFSMClass() {
+        return fsmClass;
+    }
+
+    /**
+     * Returns the enum of the states
+     */
+    public Class<S> getStateClass() {
+        return stateClass;
+    }
+
+    /**
+     * Returns the enum of the events
+     */
+    public Class<E> getEventClass() {
+        return eventClass;
+    }
+
+    /**
+     * Returns the initial state of the FSM
+     */
+    public S getStartState() {
+        return startState;
+    }
+
+    /**
+     * Returns the state by its ordinal
+     */
+    S getState(int ordinal) {
+        return states[ordinal];
+    }
+
+    /**
+     * Returns the transition from the state on the event or null if the event must be ignored
+     */
+    Cell getCell(int stateOrdinal, int eventOrdinal) {
+        return cells[stateOrdinal * eventsCount + eventOrdinal];
+    }
+
+    /**
+     * Calls the hooks of the transition the same way as {@link FSMDefinition} does
+     */
+    FlightRecorder.Outcome callHooks(Cell cell, Object fsm, TransitionListener listener,
+                                     S fromState, E event) {
+        return FSMDefinition.callHooks(cell.beforeHooks, cell.onHooks, cell.afterHooks, exceptionHooks,
+                fsm, listener, fromState, cell.to, event);
+    }
+
+    private FSMDefinition.DefinedHook[] matching(List<EnumHook> hooks, S from, E on, S to, boolean first) {
+        final List<FSMDefinition.DefinedHook> result = new ArrayList<>();
+        for (EnumHook hook : hooks) {
+            if (hook.matches(from, on, to)) {
+                result.add(hook.hook);
+                if (first) {
+                    break;
+                }
+            }
+        }
+        return result.isEmpty() ? NO_HOOKS : FSMDefinition.toArray(result);
+    }
+
+    /**
+     * Compiled transition from the state on the event together with its hooks
+     */
+    static final class Cell {
+        private final Enum<?> to;
+        private final byte toOrdinal;
+        private final boolean stop;
+        private final FSMDefinition.DefinedHook[] beforeHooks;
+        private final FSMDefinition.DefinedHook[] onHooks;
+        private final FSMDefinition.DefinedHook[] afterHooks;
+
+        private Cell(Enum<?> to, boolean stop, FSMDefinition.DefinedHook[] beforeHooks,
+                     FSMDefinition.DefinedHook[] onHooks, FSMDefinition.DefinedHook[] afterHooks) {
+            this.to = to;
+            this.toOrdinal = (byte) to.ordinal();
+            this.stop = stop;
+            this.beforeHooks = beforeHooks;
+            this.onHooks = onHooks;
+            this.afterHooks = afterHooks;
+        }
+
+        byte getToOrdinal() {
+            return toOrdinal;
+        }
+
+        boolean isStop() {
+            return stop;
+        }
+    }
+
+    /**
+     * Fluent builder of the definition. The builder is not thread-safe, the built definition is.
+     */
+    public static final class Builder<T, S extends Enum<S>, E extends Enum<E>> {
+        private final Class<T> fsmClass;
+        private final Class<S> stateClass;
+        private final Class<E> eventClass;
+        private final S[] states;
+        private final E[] events;
+        private final TransitionEntry[] table;
+        private final List<EnumHook> beforeHooks = new ArrayList<>();
+        private final List<EnumHook> onHooks = new ArrayList<>();
+        private final List<EnumHook> afterHooks = new ArrayList<>();
+        private final List<FSMDefinition.DefinedHook> exceptionHooks = new ArrayList<>();
+        private S startState;
+        private boolean hasTransitions;
+
+        private Builder(Class<T> fsmClass, Class<S> stateClass, Class<E> eventClass) {
+            this.fsmClass = fsmClass;
+            this.stateClass = stateClass;
+            this.eventClass = eventClass;
+            this.states = stateClass.getEnumConstants();
+            this.events = eventClass.getEnumConstants();
+            if (states.length == 0 || events.length == 0) {
+                throw new StateMachineException(format("FSM %s must have at least one state and one event!",
+                        fsmClass));
+            }
+            if (states.length > MAX_STATES) {
+                throw new StateMachineException(format("FSM %s cannot have more than %d states!",
+                        fsmClass, MAX_STATES));
+            }
+            this.table = new TransitionEntry[states.length * events.length];
+        }
+
+        /**
+         * Sets the initial state of the FSM
+         */
+        public Builder<T, S, E> start(S state) {
+            this.startState = state;
+            return this;
+        }
+
+        /**
+         * Adds the transition, the state can transit to itself
+         */
+        public Builder<T, S, E> transit(S from, E on, S to) {
+            return transit(from, on, to, false);
+        }
+
+        /**
+         * Adds the transition, which is the final transition of the FSM if stop is true
+         *
+         * @throws StateMachineException if there's the transition from the same state on the same event already
+         */
+        public Builder<T, S, E> transit(S from, E on, S to, boolean stop) {
+            if (from == null || on == null || to == null) {
+                throw new StateMachineException("Transition must define from, on and to constants!");
+            }
+            final int index = from.ordinal() * events.length + on.ordinal();
+            if (table[index] != null) {
+                throw new StateMachineException(format("There's more than 1 transition from %s on %s!", from, on));
+            }
+            table[index] = new TransitionEntry(to, stop);
+            hasTransitions = true;
+            return this;
+        }
+
+        /**
+         * Adds the transition from each of the states
+         */
+        public Builder<T, S, E> transitFromAny(E on, S to) {
+            return transitFromAny(on, to, false);
+        }
+
+        /**
+         * Adds the transition from each of the states, which is the final transition of the FSM if stop is true
+         */
+        public Builder<T, S, E> transitFromAny(E on, S to, boolean stop) {
+            for (S from : states) {
+                transit(from, on, to, stop);
+            }
+            return this;
+        }
+
+        /**
+         * Adds the hook called before the transition, null constants match any state or event
+         */
+        public Builder<T, S, E> beforeTransit(
+                S from, E on, S to, FSMDefinition.TransitionHook<? super T, ? super S, ? super S, ? super E> hook) {
+            beforeHooks.add(new EnumHook(hook, from, on, to));
+            return this;
+        }
+
+        /**
+         * Adds the hook called on the transition, unless there's a hook for the same transition added before
+         */
+        public Builder<T, S, E> onTransit(
+                S from, E on, S to, FSMDefinition.TransitionHook<? super T, ? super S, ? super S, ? super E> hook) {
+            onHooks.add(new EnumHook(hook, from, on, to));
+            return this;
+        }
+
+        /**
+         * Adds the hook called after the transition
+         */
+        public Builder<T, S, E> afterTransit(
+                S from, E on, S to, FSMDefinition.TransitionHook<? super T, ? super S, ? super S, ? super E> hook) {
+            afterHooks.add(new EnumHook(hook, from, on, to));
+            return this;
+        }
+
+        /**
+         * Adds the hook called if any of the transition hooks throws the exception of the defined class, unless
+         * there's a hook for the same exception added before
+         *
+         * @param preserve whether the transition must be applied once the exception is handled,
+         *                 see {@link ru.yandex.qatools.fsm.annotations.OnException#preserve()}
+         */
+        public <X extends Throwable> Builder<T, S, E> onException(
+                Class<X> exceptionClass, boolean preserve, FSMDefinition.ExceptionHook<? super T, ? super X> hook) {
+            exceptionHooks.add(new FSMDefinition.DefinedHook(hook, exceptionClass,
+                    Object.class, Object.class, Object.class, preserve));
+            return this;
+        }
+
+        /**
+         * Compiles the definition
+         */
+        public EnumFSMDefinition<T, S, E> build() {
+            if (startState == null) {
+                throw new StateMachineException(format("Start state of FSM %s is not defined!", fsmClass));
+            }
+            if (!hasTransitions) {
+                throw new StateMachineException(format("FSM %s does not define any transition!", fsmClass));
+            }
+            return new EnumFSMDefinition<>(this);
+        }
+    }
+
+    /**
+     * Target of the transition registered by the builder
+     */
+    private static final class TransitionEntry {
+        private final Enum<?> to;
+        private final boolean stop;
+
+        private TransitionEntry(Enum<?> to, boolean stop) {
+            this.to = to;
+            this.stop = stop;
+        }
+    }
+
+    /**
+     * Hook together with the constants it is registered for, null matching any constant
+     */
+    private static final class EnumHook {
+        private final FSMDefinition.DefinedHook hook;
+        private final Enum<?> from;
+        private final Enum<?> on;
+        private final Enum<?> to;
+
+        private EnumHook(Object hook, Enum<?> from, Enum<?> on, Enum<?> to) {
+            this.hook = new FSMDefinition.DefinedHook(hook, null, Object.class, Object.class, Object.class, false);
+            this.from = from;
+            this.on = on;
+            this.to = to;
+        }
+
+        private boolean matches(Enum<?> from, Enum<?> on, Enum<?> to) {
+            return (this.from == null || this.from == from)
+                    && (this.on == null || this.on == on)
+                    && (this.to == null || this.to == to);
+        }
+    }
+}
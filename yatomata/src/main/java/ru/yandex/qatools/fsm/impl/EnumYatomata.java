@@ -0,0 +1,166 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.FireResult;
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.StopConditionAware;
+import ru.yandex.qatools.fsm.TransitionListener;
+import ru.yandex.qatools.fsm.Yatomata;
+
+import static ru.yandex.qatools.fsm.impl.FlightRecorder.Outcome.ROLLED_BACK;
+
+/**
+ * FSM engine of the {@link EnumFSMDefinition}. The current state is kept as the ordinal of the state constant, the
+ * transition is found by its ordinal and the ordinal of the event constant, so the transition does not allocate
+ * anything except the objects created by the hooks. The events of other classes are ignored.
+ *
+ * @author Ilya Sadykov
+ */
+public class EnumYatomata<T, S extends Enum<S>, E extends Enum<E>> implements Yatomata<T> {
+    private final EnumFSMDefinition<T, S, E> definition;
+    private final T fsm;
+    private final boolean stoppedByCondition;
+    private final TransitionListener listener;
+    private byte state;
+    private boolean completed;
+
+    EnumYatomata(EnumFSMDefinition<T, S, E> definition, T fsm, S state, TransitionListener listener) {
+        this.definition = definition;
+        this.fsm = fsm;
+        this.stoppedByCondition = fsm instanceof StopConditionAware;
+        this.listener = listener;
+        this.state = (byte) state.ordinal();
+    }
+
+    /**
+     * Returns the current state for the FSM
+     */
+    public S getState() {
+        return definition.getState(state);
+    }
+
+    /**
+     * Returns the current state for the FSM
+     */
+    @Override
+    public Object getCurrentState() {
+        return getState();
+    }
+
+    /**
+     * Checks if the FSM is already completed
+     */
+    @Override
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Returns the internal FSM class
+     */
+    @Override
+    public Class<T> getFSMClass() {
+        return definition.getFSMClass();
+    }
+
+    /**
+     * Returns the internal FSM instance
+     */
+    @Override
+    public T getFSM() {
+        return fsm;
+    }
+
+    /**
+     * Fires new event into the state machine
+     */
+    public S fire(E event) {
+        checkNotCompleted();
+        if (event != null) {
+            transit(event);
+        }
+        return getState();
+    }
+
+    /**
+     * Fires new event into the state machine, the events which are not the constants of the event enum are ignored
+     */
+    @Override
+    public Object fire(Object event) {
+        checkNotCompleted();
+        if (event != null) {
+            transit(event);
+        }
+        return getState();
+    }
+
+    /**
+     * Fires the events into the state machine in order, the null events are skipped
+     */
+    @Override
+    public FireResult fireAll(Iterable<?> events) {
+        checkNotCompleted();
+        int applied = 0;
+        int ignored = 0;
+        for (Object event : events) {
+            if (event == null) {
+                continue;
+            }
+            if (transit(event)) {
+                ++applied;
+            } else {
+                ++ignored;
+            }
+            if (completed) {
+                break;
+            }
+        }
+        return new FireResult(getState(), applied, ignored);
+    }
+
+    private void checkNotCompleted() {
+        if (completed) {
+            throw new StateMachineException("State machine is already completed!");
+        }
+    }
+
+    /**
+     * Performs the transition for the event
+     *
+     * @return false if the event is ignored
+     */
+    @SuppressWarnings("unchecked")
+    private boolean transit(Object event) {
+        final S fromState = getState();
+        final EnumFSMDefinition.Cell cell = definition.getEventClass().isInstance(event) ?
+                definition.getCell(state, ((E) event).ordinal()) : null;
+        if (cell == null) {
+            if (listener != null) {
+                listener.onEventIgnored(fsm, fromState, event);
+            }
+            return false;
+        }
+        final S newState = definition.getState(cell.getToOrdinal());
+        final long start = (listener != null) ? System.nanoTime() : 0;
+        if (listener != null) {
+            listener.onTransitionResolved(fsm, fromState, newState, event);
+        }
+        final FlightRecorder.Outcome outcome = definition.callHooks(cell, fsm, listener, fromState, (E) event);
+        if (outcome != ROLLED_BACK) {
+            state = cell.getToOrdinal();
+        }
+        completed = cell.isStop() || (stoppedByCondition && isStopRequired(newState, event));
+        if (listener != null) {
+            listener.onTransitionFinished(fsm, fromState, newState, event, outcome != ROLLED_BACK,
+                    System.nanoTime() - start);
+            if (completed) {
+                listener.onCompleted(fsm, getState(), event);
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean isStopRequired(S newState, Object event) {
+        return ((StopConditionAware) fsm).isStopRequired(newState, event);
+    }
+}
@@ -0,0 +1,154 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.TransitionListener;
+import ru.yandex.qatools.fsm.TransitionListeners;
+import ru.yandex.qatools.fsm.Yatomata;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class FSMBuilder<T> implements Yatomata.Builder<T> {
+    private T instance;
+    private Class<T> fsmClass;
+    private FSMDefinition<T> definition;
+    private TransitionListener listener;
+    private int flightRecorderCapacity;
+    private volatile Metadata.ClassInfo<T> classInfo;
+    private volatile T sharedInstance;
+
+    /**
+     * Create FSM from class with no-arg constructor
+     * @param fsmClass FSM class
+     */
+    public FSMBuilder(Class<T> fsmClass) {
+        this.fsmClass = fsmClass;
+    }
+
+    /**
+     * Use already instantiated FSM class. 
+     * This can be e.g. used with Spring beans.
+     * @param instance FSM instance
+     */
+    public FSMBuilder(T instance) {
+        this.instance = instance;
+    }
+
+    /**
+     * Create FSM from the programmatic definition, the handler class must have the no-arg constructor
+     * @param definition FSM definition
+     */
+    public FSMBuilder(FSMDefinition<T> definition) {
+        this.definition = definition;
+        this.fsmClass = definition.getFSMClass();
+    }
+
+    /**
+     * Create FSM from the programmatic definition with already instantiated handler
+     * @param definition FSM definition
+     * @param instance FSM handler passed to the hooks
+     */
+    public FSMBuilder(FSMDefinition<T> definition, T instance) {
+        this.definition = definition;
+        this.instance = instance;
+    }
+
+    /**
+     * Attach the listener to all the FSM engines built by this builder. The listeners attached by the repeated
+     * calls are all notified in the order of attachment (see {@link TransitionListeners#compose})
+     * @param listener transition listener
+     */
+    public FSMBuilder<T> withListener(TransitionListener listener) {
+        this.listener = TransitionListeners.compose(this.listener, listener);
+        return this;
+    }
+
+    /**
+     * Attach the new flight recorder keeping the last transitions to each FSM engine built by this builder
+     * @param capacity number of the transitions to keep
+     */
+    public FSMBuilder<T> withFlightRecorder(int capacity) {
+        this.flightRecorderCapacity = capacity;
+        return this;
+    }
+
+    /**
+     * Build the new FSM engine with default state
+     */
+    @Override
+    public Yatomata<T> build() {
+        return build(null);
+    }
+
+    /**
+     * Build the new FSM engine with the defined state. The metadata of the FSM class and the shared FSM instance
+     * (see {@link ru.yandex.qatools.fsm.annotations.FSM#sharedHandler()}) are resolved by the first call, so the
+     * subsequent calls do not use reflection unless the new FSM instance or the start state must be instantiated.
+     */
+    @Override
+    public Yatomata<T> build(Object state) {
+        try {
+            final YatomataImpl<T> engine = build(getFSM(), state, false);
+            if (state == null) {
+                engine.initStartState();
+            }
+            return engine;
+        } catch (Exception e) {
+            throw new RuntimeException("Could not initialize the FSM Engine for FSM " + getFsmClass(), e);
+        }
+    }
+
+    /**
+     * Build the engine with the listener and the flight recorder of this builder for the defined FSM instance,
+     * state and completion flag, the start state is not instantiated
+     */
+    YatomataImpl<T> build(T fsm, Object state, boolean completed) throws FSMException {
+        final FlightRecorder recorder = (flightRecorderCapacity > 0) ?
+                new FlightRecorder(flightRecorderCapacity) : null;
+        return new YatomataImpl<>(getClassInfo(), fsm, state, completed, listener, recorder);
+    }
+
+    /**
+     * Returns the FSM instance for the new engine: the instance passed to this builder, the shared instance or
+     * the new one
+     */
+    T getFSM() throws FSMException, IllegalAccessException, InstantiationException {
+        if (instance != null) {
+            return instance;
+        }
+        return getClassInfo().isSharedHandler() ? getSharedInstance() : fsmClass.newInstance();
+    }
+
+    @SuppressWarnings("unchecked")
+    Metadata.ClassInfo<T> getClassInfo() throws FSMException {
+        Metadata.ClassInfo<T> info = classInfo;
+        if (info == null) {
+            info = (definition != null) ? definition.getClassInfo() :
+                    (Metadata.ClassInfo<T>) Metadata.get(getFsmClass());
+            classInfo = info;
+        }
+        return info;
+    }
+
+    private T getSharedInstance() throws IllegalAccessException, InstantiationException {
+        T inst = sharedInstance;
+        if (inst == null) {
+            synchronized (this) {
+                inst = sharedInstance;
+                if (inst == null) {
+                    inst = fsmClass.newInstance();
+                    sharedInstance = inst;
+                }
+            }
+        }
+        return inst;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<T> getFsmClass() {
+        if (definition != null) {
+            return definition.getFSMClass();
+        }
+        return (instance != null) ? (Class<T>) instance.getClass() : fsmClass;
+    }
+}
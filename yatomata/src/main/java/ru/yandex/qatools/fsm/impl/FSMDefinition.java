@@ -0,0 +1,382 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.TransitionListener;
+import ru.yandex.qatools.fsm.annotations.Transitions;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * FSM defined programmatically instead of the @FSM and @Transitions annotations and the annotated hook methods.
+ * The definition is compiled into the same metadata as the annotated FSM class, so the engines built from it by
+ * {@link FSMBuilder#FSMBuilder(FSMDefinition)} support the listeners, the flight recorder and
+ * {@link ru.yandex.qatools.fsm.StopConditionAware}:
+ * <pre>
+ * FSMDefinition&lt;Handler&gt; definition = FSMDefinition.builder(Handler.class)
+ *     .start(Idle.class)
+ *     .transit(Idle.class, ProcessStarted.class, Running.class)
+ *     .transit(Running.class, ProcessCompleted.class, Completed.class, true)
+ *     .onTransit(Idle.class, ProcessStarted.class, Running.class, hook)
+ *     .build();
+ * Yatomata&lt;Handler&gt; engine = new FSMBuilder&lt;&gt;(definition, handler).build();
+ * </pre>
+ * The hooks are the implementations of {@link TransitionHook}, {@link ExceptionHook} and {@link StateFactory}
+ * receiving the FSM handler and called directly, without reflection. Each hook is registered for the classes of the
+ * states and the event: all the matching @BeforeTransit and @AfterTransit hooks are called in the order of
+ * registration, while only the first matching @OnTransit and @OnException hook is called. The definition is
+ * immutable and can be shared by any number of engines and threads.
+ *
+ * @author Ilya Sadykov
+ */
+public final class FSMDefinition<T> {
+
+    /**
+     * Hook of the transition from the state of class F to the state of class S on the event of class E
+     */
+    public interface TransitionHook<T, F, S, E> {
+        void call(T fsm, F fromState, S toState, E event) throws Exception;
+    }
+
+    /**
+     * Hook of the exception of class X thrown by the transition hooks
+     */
+    public interface ExceptionHook<T, X extends Throwable> {
+        void call(T fsm, X exception, Object fromState, Object toState, Object event) throws Exception;
+    }
+
+    /**
+     * Factory of the new states of class S, the event is null for the start state
+     */
+    public interface StateFactory<T, S> {
+        S create(T fsm, Object event) throws Exception;
+    }
+
+    private final Class<T> fsmClass;
+    private final DefinedHook[] beforeHooks;
+    private final DefinedHook[] onHooks;
+    private final DefinedHook[] afterHooks;
+    private final DefinedHook[] exceptionHooks;
+    private final Map<Class, StateFactory> stateFactories;
+    private final Metadata.ClassInfo<T> classInfo;
+
+    private FSMDefinition(Builder<T> builder) {
+        this.fsmClass = builder.fsmClass;
+        this.beforeHooks = toArray(builder.beforeHooks);
+        this.onHooks = toArray(builder.onHooks);
+        this.afterHooks = toArray(builder.afterHooks);
+        this.exceptionHooks = toArray(builder.exceptionHooks);
+        this.stateFactories = new HashMap<>(builder.stateFactories);
+        this.classInfo = new Metadata.ClassInfo<>(this,
+                new TransitionModel(builder.startStateClass, builder.sharedStates, builder.transitions));
+    }
+
+    /**
+     * Starts the definition of the FSM with the handler of the defined class passed to the hooks
+     */
+    public static <T> Builder<T> builder(Class<T> fsmClass) {
+        return new Builder<>(fsmClass);
+    }
+
+    /**
+     * Returns the class of the FSM handler
+     */
+    public Class<T> getFSMClass() {
+        return fsmClass;
+    }
+
+    /**
+     * Returns the start state class followed by the state classes declared by the transitions
+     */
+    public Class[] getStateClasses() {
+        return classInfo.getStateClasses();
+    }
+
+    Metadata.ClassInfo<T> getClassInfo() {
+        return classInfo;
+    }
+
+    /**
+     * Checks if the factory is registered for the state class
+     */
+    boolean hasStateFactory(Class stateClass) {
+        return stateFactories.containsKey(stateClass);
+    }
+
+    /**
+     * Creates the new state by the factory registered for the state class or returns null if there's no factory
+     */
+    @SuppressWarnings("unchecked")
+    Object newState(Object fsm, Class stateClass, Object event) throws Exception {
+        final StateFactory factory = stateFactories.get(stateClass);
+        return (factory != null) ? factory.create(fsm, event) : null;
+    }
+
+    /**
+     * Calls the hooks of the transition the same way as {@link Metadata.ClassInfo#callHooks} calls the annotated
+     * methods
+     */
+    FlightRecorder.Outcome callHooks(Object fsm, TransitionListener listener,
+                                     Object fromState, Object toState, Object event) {
+        return callHooks(beforeHooks, onHooks, afterHooks, exceptionHooks, fsm, listener, fromState, toState, event);
+    }
+
+    /**
+     * Calls all the matching before and after hooks and the first matching on hook, handles the exception thrown by
+     * any of them with the first matching exception hook
+     */
+    static FlightRecorder.Outcome callHooks(DefinedHook[] beforeHooks, DefinedHook[] onHooks,
+                                            DefinedHook[] afterHooks, DefinedHook[] exceptionHooks,
+                                            Object fsm, TransitionListener listener,
+                                            Object fromState, Object toState, Object event) {
+        try {
+            callAll(beforeHooks, fsm, listener, fromState, toState, event);
+            callFirst(onHooks, fsm, listener, fromState, toState, event);
+            callAll(afterHooks, fsm, listener, fromState, toState, event);
+            return FlightRecorder.Outcome.APPLIED;
+        } catch (Throwable e) {
+            final DefinedHook called;
+            try {
+                called = callFirst(exceptionHooks, fsm, listener, e, fromState, toState, event);
+            } catch (Throwable onE) {
+                throw new StateMachineException(format("Could not invoke the exception hook for FSM %s " +
+                        "while trying to transit (%s) -> (%s) on %s!", fsm, fromState, toState, event), e);
+            }
+            if (called == null) {
+                throw new StateMachineException(format("Could not invoke transition callback method " +
+                        "with FSM %s  (%s) -> (%s) on %s!", fsm, fromState, toState, event), e);
+            }
+            if (listener != null) {
+                listener.onExceptionHandled(fsm, fromState, toState, event, e, called.preserve);
+            }
+            return called.preserve ? FlightRecorder.Outcome.PRESERVED : FlightRecorder.Outcome.ROLLED_BACK;
+        }
+    }
+
+    private static void callAll(DefinedHook[] hooks, Object fsm, TransitionListener listener,
+                                Object fromState, Object toState, Object event) throws Throwable {
+        for (DefinedHook hook : hooks) {
+            if (hook.matches(null, fromState, toState, event)) {
+                hook.call(fsm, listener, null, fromState, toState, event);
+            }
+        }
+    }
+
+    private static DefinedHook callFirst(DefinedHook[] hooks, Object fsm, TransitionListener listener,
+                                         Object fromState, Object toState, Object event) throws Throwable {
+        return callFirst(hooks, fsm, listener, null, fromState, toState, event);
+    }
+
+    private static DefinedHook callFirst(DefinedHook[] hooks, Object fsm, TransitionListener listener,
+                                         Throwable exception, Object fromState, Object toState, Object event)
+            throws Throwable {
+        for (DefinedHook hook : hooks) {
+            if (hook.matches(exception, fromState, toState, event)) {
+                hook.call(fsm, listener, exception, fromState, toState, event);
+                return hook;
+            }
+        }
+        return null;
+    }
+
+    static DefinedHook[] toArray(List<DefinedHook> hooks) {
+        return hooks.toArray(new DefinedHook[hooks.size()]);
+    }
+
+    /**
+     * Fluent builder of the definition. The builder is not thread-safe, the built definition is.
+     */
+    public static final class Builder<T> {
+        private final Class<T> fsmClass;
+        private final List<TransitionModel.Transition> transitions = new ArrayList<>();
+        private final List<DefinedHook> beforeHooks = new ArrayList<>();
+        private final List<DefinedHook> onHooks = new ArrayList<>();
+        private final List<DefinedHook> afterHooks = new ArrayList<>();
+        private final List<DefinedHook> exceptionHooks = new ArrayList<>();
+        private final Map<Class, StateFactory> stateFactories = new HashMap<>();
+        private Class startStateClass;
+        private boolean sharedStates;
+
+        private Builder(Class<T> fsmClass) {
+            this.fsmClass = fsmClass;
+        }
+
+        /**
+         * Sets the initial state of the FSM
+         */
+        public Builder<T> start(Class<?> stateClass) {
+            this.startStateClass = stateClass;
+            return this;
+        }
+
+        /**
+         * Shares the instances of the state classes without instance fields between all the engines,
+         * see {@link ru.yandex.qatools.fsm.annotations.FSM#sharedStates()}
+         */
+        public Builder<T> sharedStates(boolean sharedStates) {
+            this.sharedStates = sharedStates;
+            return this;
+        }
+
+        /**
+         * Adds the transition, {@link Transitions.ANY} and {@link Transitions.PREVIOUS} can be used the same way as
+         * within the @Transit annotation
+         */
+        public Builder<T> transit(Class<?> from, Class<?> on, Class<?> to) {
+            return transit(from, on, to, false);
+        }
+
+        /**
+         * Adds the transition, which is the final transition of the FSM if stop is true
+         */
+        public Builder<T> transit(Class<?> from, Class<?> on, Class<?> to, boolean stop) {
+            transitions.add(new TransitionModel.Transition(new Class[]{from}, new Class[]{on}, to, stop));
+            return this;
+        }
+
+        /**
+         * Adds the hook called before the transition
+         */
+        public <F, S, E> Builder<T> beforeTransit(Class<F> from, Class<E> on, Class<S> to,
+                                                  TransitionHook<? super T, ? super F, ? super S, ? super E> hook) {
+            beforeHooks.add(new DefinedHook(hook, null, from, on, to, false));
+            return this;
+        }
+
+        /**
+         * Adds the hook called on the transition, unless there's a hook for the same transition added before
+         */
+        public <F, S, E> Builder<T> onTransit(Class<F> from, Class<E> on, Class<S> to,
+                                              TransitionHook<? super T, ? super F, ? super S, ? super E> hook) {
+            onHooks.add(new DefinedHook(hook, null, from, on, to, false));
+            return this;
+        }
+
+        /**
+         * Adds the hook called after the transition
+         */
+        public <F, S, E> Builder<T> afterTransit(Class<F> from, Class<E> on, Class<S> to,
+                                                 TransitionHook<? super T, ? super F, ? super S, ? super E> hook) {
+            afterHooks.add(new DefinedHook(hook, null, from, on, to, false));
+            return this;
+        }
+
+        /**
+         * Adds the hook called if any of the transition hooks throws the exception of the defined class, unless
+         * there's a hook for the same exception added before
+         *
+         * @param preserve whether the transition must be applied once the exception is handled,
+         *                 see {@link ru.yandex.qatools.fsm.annotations.OnException#preserve()}
+         */
+        public <X extends Throwable> Builder<T> onException(Class<X> exceptionClass, boolean preserve,
+                                                            ExceptionHook<? super T, ? super X> hook) {
+            exceptionHooks.add(new DefinedHook(hook, exceptionClass, Object.class, Object.class, Object.class,
+                    preserve));
+            return this;
+        }
+
+        /**
+         * Sets the factory of the new states of the defined class instead of its no-arg constructor
+         */
+        public <S> Builder<T> newState(Class<S> stateClass, StateFactory<? super T, ? extends S> factory) {
+            stateFactories.put(stateClass, factory);
+            return this;
+        }
+
+        /**
+         * Compiles the definition
+         */
+        public FSMDefinition<T> build() {
+            if (startStateClass == null) {
+                throw new StateMachineException(format("Start state of FSM %s is not defined!", fsmClass));
+            }
+            if (transitions.isEmpty()) {
+                throw new StateMachineException(format("FSM %s does not define any transition!", fsmClass));
+            }
+            return new FSMDefinition<>(this);
+        }
+    }
+
+    /**
+     * Hook together with the classes of the arguments it accepts
+     */
+    static final class DefinedHook {
+        private final Object hook;
+        private final Method method;
+        private final Class<?> exceptionClass;
+        private final Class<?> fromStateClass;
+        private final Class<?> eventClass;
+        private final Class<?> toStateClass;
+        private final boolean preserve;
+
+        DefinedHook(Object hook, Class<?> exceptionClass, Class<?> fromStateClass, Class<?> eventClass,
+                    Class<?> toStateClass, boolean preserve) {
+            if (hook == null) {
+                throw new StateMachineException("Hook cannot be null!");
+            }
+            this.hook = hook;
+            this.method = findCallMethod(hook);
+            this.exceptionClass = exceptionClass;
+            this.fromStateClass = fromStateClass;
+            this.eventClass = eventClass;
+            this.toStateClass = toStateClass;
+            this.preserve = preserve;
+        }
+
+        private boolean matches(Throwable exception, Object fromState, Object toState, Object event) {
+            return (exceptionClass == null || exceptionClass.isInstance(exception))
+                    && fromStateClass.isInstance(fromState)
+                    && toStateClass.isInstance(toState)
+                    && eventClass.isInstance(event);
+        }
+
+        private void call(Object fsm, TransitionListener listener, Throwable exception,
+                          Object fromState, Object toState, Object event) throws Throwable {
+            if (listener == null) {
+                call(fsm, exception, fromState, toState, event);
+                return;
+            }
+            listener.onHookStarted(fsm, method);
+            final long start = System.nanoTime();
+            try {
+                call(fsm, exception, fromState, toState, event);
+            } catch (Throwable e) {
+                listener.onHookFinished(fsm, method, System.nanoTime() - start, e);
+                throw e;
+            }
+            listener.onHookFinished(fsm, method, System.nanoTime() - start, null);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void call(Object fsm, Throwable exception,
+                          Object fromState, Object toState, Object event) throws Exception {
+            if (exceptionClass == null) {
+                ((TransitionHook) hook).call(fsm, fromState, toState, event);
+            } else {
+                ((ExceptionHook) hook).call(fsm, exception, fromState, toState, event);
+            }
+        }
+
+        /**
+         * Finds the method implementing the hook interface once, so the listeners can tell the hooks apart
+         */
+        private static Method findCallMethod(Object hook) {
+            for (Method method : hook.getClass().getMethods()) {
+                if ("call".equals(method.getName()) && !method.isBridge()) {
+                    return method;
+                }
+            }
+            for (Method method : hook.getClass().getMethods()) {
+                if ("call".equals(method.getName())) {
+                    return method;
+                }
+            }
+            throw new StateMachineException(format("Hook %s does not implement the call method!", hook));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.annotations.FSM;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static java.lang.String.format;
+
+/**
+ * Builds the metadata of the FSM classes in advance, so the first events fired into their engines do not pay for
+ * the reflective scanning of the FSM classes. Call it at the application startup:
+ * <pre>
+ *     FSMPreloader.preload("com.example.fsm");
+ * </pre>
+ * The metadata of the different classes is built in parallel. The metadata that is already built is not rebuilt.
+ *
+ * @author Ilya Sadykov
+ */
+public final class FSMPreloader {
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private FSMPreloader() {
+    }
+
+    /**
+     * Finds the classes annotated with @FSM within the package and its subpackages using the context class loader
+     * and builds their metadata
+     *
+     * @return the FSM classes found
+     */
+    public static List<Class<?>> preload(String packageName) throws FSMException {
+        return preload(packageName, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Finds the classes annotated with @FSM within the package and its subpackages using the class loader
+     * and builds their metadata
+     *
+     * @return the FSM classes found
+     */
+    public static List<Class<?>> preload(String packageName, ClassLoader classLoader) throws FSMException {
+        final List<Class<?>> fsmClasses = findFSMClasses(packageName, classLoader);
+        preload(fsmClasses);
+        return fsmClasses;
+    }
+
+    /**
+     * Builds the metadata of the FSM classes using the temporary pool of the threads
+     *
+     * @throws FSMException if any metadata could not be built, the other failures are added as suppressed
+     */
+    public static void preload(Collection<? extends Class<?>> fsmClasses) throws FSMException {
+        final int threads = Math.min(fsmClasses.size(), Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) {
+            preloadInCallingThread(fsmClasses);
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new PreloaderThreadFactory());
+        try {
+            preload(fsmClasses, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Builds the metadata of the FSM classes using the executor and waits until all of them are built
+     *
+     * @throws FSMException if any metadata could not be built, the other failures are added as suppressed
+     */
+    public static void preload(Collection<? extends Class<?>> fsmClasses, ExecutorService executor)
+            throws FSMException {
+        final List<Future<?>> futures = new ArrayList<>(fsmClasses.size());
+        for (final Class<?> fsmClass : fsmClasses) {
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws FSMException {
+                    return Metadata.get(fsmClass);
+                }
+            }));
+        }
+        FSMException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FSMException("Interrupted while preloading the FSM metadata!", e);
+            } catch (ExecutionException e) {
+                failure = addFailure(failure, e.getCause());
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Builds the metadata of the FSM classes one by one within the calling thread. Fails the same way as the
+     * executor does: all the classes are built before the first failure is thrown with the others as suppressed.
+     */
+    static void preloadInCallingThread(Collection<? extends Class<?>> fsmClasses) throws FSMException {
+        FSMException failure = null;
+        for (Class<?> fsmClass : fsmClasses) {
+            try {
+                Metadata.get(fsmClass);
+            } catch (Throwable e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static FSMException addFailure(FSMException failure, Throwable cause) {
+        final FSMException exception = (cause instanceof FSMException) ? (FSMException) cause :
+                new FSMException("Failed to preload the FSM metadata!", cause);
+        if (failure == null) {
+            return exception;
+        }
+        failure.addSuppressed(exception);
+        return failure;
+    }
+
+    /**
+     * Finds the classes annotated with @FSM within the package and its subpackages
+     */
+    public static List<Class<?>> findFSMClasses(String packageName, ClassLoader classLoader) throws FSMException {
+        final String path = packageName.replace('.', '/');
+        final List<String> classNames = new ArrayList<>();
+        try {
+            final Enumeration<URL> resources = classLoader.getResources(path);
+            while (resources.hasMoreElements()) {
+                final URL resource = resources.nextElement();
+                if ("file".equals(resource.getProtocol())) {
+                    collectClassNames(new File(resource.toURI()), packageName, classNames);
+                } else if ("jar".equals(resource.getProtocol())) {
+                    collectClassNames(((JarURLConnection) resource.openConnection()).getJarFile(), path, classNames);
+                }
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new FSMException(format("Failed to scan the package %s!", packageName), e);
+        }
+        final List<Class<?>> result = new ArrayList<>();
+        for (String className : classNames) {
+            try {
+                final Class<?> clazz = Class.forName(className, false, classLoader);
+                if (clazz.isAnnotationPresent(FSM.class)) {
+                    result.add(clazz);
+                }
+            } catch (ClassNotFoundException | LinkageError ignored) {
+                // the class cannot be loaded, so it cannot be used as FSM either
+            }
+        }
+        return result;
+    }
+
+    private static void collectClassNames(File directory, String packageName, List<String> classNames) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectClassNames(file, packageName + "." + file.getName(), classNames);
+            } else if (file.getName().endsWith(CLASS_SUFFIX)) {
+                final String name = file.getName();
+                classNames.add(packageName + "." + name.substring(0, name.length() - CLASS_SUFFIX.length()));
+            }
+        }
+    }
+
+    private static void collectClassNames(JarFile jar, String path, List<String> classNames) {
+        final Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            final String name = entries.nextElement().getName();
+            if (name.startsWith(path + "/") && name.endsWith(CLASS_SUFFIX)) {
+                classNames.add(name.substring(0, name.length() - CLASS_SUFFIX.length()).replace('/', '.'));
+            }
+        }
+    }
+
+    private static final class PreloaderThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "yatomata-preloader-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
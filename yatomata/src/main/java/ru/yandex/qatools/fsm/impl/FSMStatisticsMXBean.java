@@ -0,0 +1,43 @@
+package ru.yandex.qatools.fsm.impl;
+
+/**
+ * Management interface of the runtime statistics of the FSM class registered by {@link YatomataMBeans}
+ *
+ * @author Ilya Sadykov
+ */
+public interface FSMStatisticsMXBean {
+
+    String getFSMClass();
+
+    /**
+     * Returns the number of the events fired, both performing the transition and ignored
+     */
+    long getFires();
+
+    long getTransitions();
+
+    long getIgnoredEvents();
+
+    /**
+     * Returns the number of the exceptions thrown by the hook methods
+     */
+    long getExceptions();
+
+    long getCompletions();
+
+    /**
+     * Returns the mean time of the transition
+     */
+    long getMeanFireNanos();
+
+    /**
+     * Returns the max time of the transition
+     */
+    long getMaxFireNanos();
+
+    /**
+     * Returns the time spent on building the metadata of the FSM class, taken once the first event of the class is
+     * seen. 0 if the metadata was not cached at that moment, e.g. for the FSM built from the definition.
+     */
+    long getMetadataBuildNanos();
+}
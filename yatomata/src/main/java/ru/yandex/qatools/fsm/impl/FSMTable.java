@@ -0,0 +1,186 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.StateMachineException;
+
+import java.lang.reflect.Modifier;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static ru.yandex.qatools.fsm.annotations.Transitions.PREVIOUS;
+import static ru.yandex.qatools.fsm.impl.FlightRecorder.Outcome.ROLLED_BACK;
+
+/**
+ * Table of the fixed number of FSM instances of the same FSM class indexed by the int keys from 0 to size - 1.
+ * Instead of the engine per instance, the table keeps the current state of each instance as the ordinal of its
+ * class within the states declared by the FSM and the completion flag as a bit, i.e. a bit more than 2 bytes per
+ * instance. All the instances start from the start state.
+ * <p/>
+ * The table suits the FSMs with the states carrying no data: each declared state class is instantiated once per
+ * table and its instance is shared by all the instances being in this state. The transitions and the hook methods
+ * are the same as for the {@link YatomataImpl}, the hooks are called on the single FSM object. The @NewState methods
+ * accepting the event are not supported. The table is not thread-safe.
+ *
+ * @author Ilya Sadykov
+ */
+public class FSMTable<T> {
+
+    private final T fsm;
+    private final Metadata.ClassInfo<T> fsmClassInfo;
+    private final Object[] stateObjects;
+    private final Map<Class, Short> ordinals = new IdentityHashMap<>();
+    private final short[] states;
+    private final long[] completed;
+    private final ParametersProvider parameters = new ParametersProvider();
+
+    /**
+     * Creates the table of instances with the new instance of the FSM class
+     */
+    public FSMTable(Class<T> fsmClass, int size) {
+        this(newFSM(fsmClass), fsmClass, size);
+    }
+
+    /**
+     * Creates the table of instances with the defined FSM object
+     */
+    @SuppressWarnings("unchecked")
+    public FSMTable(T fsm, int size) {
+        this(fsm, (Class<T>) fsm.getClass(), size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private FSMTable(T fsm, Class<T> fsmClass, int size) {
+        this.fsm = fsm;
+        try {
+            this.fsmClassInfo = Metadata.get(fsmClass);
+        } catch (FSMException e) {
+            throw new StateMachineException(format("Could not read the metadata of FSM %s!", fsmClass), e);
+        }
+        final Class[] stateClasses = fsmClassInfo.getStateClasses();
+        if (stateClasses.length > Short.MAX_VALUE) {
+            throw new StateMachineException(format("Too many states in FSM %s!", fsmClass));
+        }
+        this.stateObjects = new Object[stateClasses.length];
+        for (short i = 0; i < stateClasses.length; ++i) {
+            final Class<?> stateClass = stateClasses[i];
+            ordinals.put(stateClass, i);
+            if (!stateClass.isInterface() && !Modifier.isAbstract(stateClass.getModifiers())) {
+                stateObjects[i] = fsmClassInfo.initNewState(fsm, stateClass, null);
+            }
+        }
+        if (stateObjects[0] == null) {
+            throw new StateMachineException(format("Start state of FSM %s cannot be instantiated!", fsmClass));
+        }
+        this.states = new short[size];
+        this.completed = new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * Fires new event into the instance with the defined key
+     *
+     * @return the current state of the instance
+     */
+    public Object fire(int key, Object event) {
+        if (isCompleted(key)) {
+            throw new StateMachineException(format("State machine %d is already completed!", key));
+        }
+        final Object currentState = stateObjects[states[key]];
+        if (event == null) {
+            return currentState;
+        }
+        final TransitionModel.Transition transit = fsmClassInfo.findSingleTransition(currentState, event);
+        if (transit == null) {
+            return currentState;
+        }
+        short newOrdinal = states[key];
+        if (!transit.getTo().equals(PREVIOUS.class) && !transit.getTo().equals(currentState.getClass())) {
+            newOrdinal = ordinalOf(transit.getTo());
+        }
+        final Object newState = stateObjects[newOrdinal];
+        try {
+            if (fsmClassInfo.callHooks(fsm, parameters, null, currentState, newState, event) != ROLLED_BACK) {
+                states[key] = newOrdinal;
+            }
+        } finally {
+            parameters.set(null, null, null, null);
+        }
+        if (fsmClassInfo.isCompleted(fsm, newState, event, transit.isStop())) {
+            completed[key >>> 6] |= 1L << key;
+        }
+        return stateObjects[states[key]];
+    }
+
+    /**
+     * Returns the current state of the instance with the defined key
+     */
+    public Object getCurrentState(int key) {
+        return stateObjects[states[key]];
+    }
+
+    /**
+     * Checks if the instance with the defined key is already completed
+     */
+    public boolean isCompleted(int key) {
+        return (completed[key >>> 6] & (1L << key)) != 0;
+    }
+
+    /**
+     * Returns the number of the instances being in the state of the defined class
+     */
+    public int countInState(Class<?> stateClass) {
+        final Short ordinal = ordinals.get(stateClass);
+        if (ordinal == null) {
+            return 0;
+        }
+        final short value = ordinal;
+        int count = 0;
+        for (short state : states) {
+            if (state == value) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of the completed instances
+     */
+    public int countCompleted() {
+        int count = 0;
+        for (long bits : completed) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of the instances
+     */
+    public int size() {
+        return states.length;
+    }
+
+    /**
+     * Returns the FSM object
+     */
+    public T getFSM() {
+        return fsm;
+    }
+
+    private short ordinalOf(Class<?> stateClass) {
+        final Short ordinal = ordinals.get(stateClass);
+        if (ordinal == null || stateObjects[ordinal] == null) {
+            throw new StateMachineException(format("State %s cannot be instantiated by the table!", stateClass));
+        }
+        return ordinal;
+    }
+
+    private static <T> T newFSM(Class<T> fsmClass) {
+        try {
+            return fsmClass.newInstance();
+        } catch (Exception e) {
+            throw new StateMachineException(format("Could not instantiate the FSM %s!", fsmClass), e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.Yatomata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size ring buffer of the last transitions of the single FSM engine. All the buffers are allocated once,
+ * so recording does not allocate. The recorder is attached to the engine by
+ * {@link FSMBuilder#withFlightRecorder(int)}. The recorded transitions are added to each
+ * {@link ru.yandex.qatools.fsm.StateMachineException} thrown by the engine as the suppressed exception.
+ *
+ * @author Ilya Sadykov
+ */
+public class FlightRecorder {
+
+    /**
+     * Outcome of the recorded event
+     */
+    public enum Outcome {
+        /**
+         * The transition is performed
+         */
+        APPLIED,
+        /**
+         * There's no transition for the event
+         */
+        IGNORED,
+        /**
+         * The hook has thrown the exception, the @OnException method has preserved the transition
+         */
+        PRESERVED,
+        /**
+         * The hook has thrown the exception, the @OnException method has rolled back the transition
+         */
+        ROLLED_BACK,
+        /**
+         * The engine has thrown the exception
+         */
+        FAILED
+    }
+
+    /**
+     * Recorded event
+     */
+    public static final class Entry {
+        private final Class<?> fromStateClass;
+        private final Class<?> eventClass;
+        private final Class<?> toStateClass;
+        private final long nanoTime;
+        private final Outcome outcome;
+
+        private Entry(Class<?> fromStateClass, Class<?> eventClass, Class<?> toStateClass, long nanoTime,
+                      Outcome outcome) {
+            this.fromStateClass = fromStateClass;
+            this.eventClass = eventClass;
+            this.toStateClass = toStateClass;
+            this.nanoTime = nanoTime;
+            this.outcome = outcome;
+        }
+
+        public Class<?> getFromStateClass() {
+            return fromStateClass;
+        }
+
+        public Class<?> getEventClass() {
+            return eventClass;
+        }
+
+        /**
+         * Returns the class of the target state or null if there was no transition
+         */
+        public Class<?> getToStateClass() {
+            return toStateClass;
+        }
+
+        /**
+         * Returns the value of {@link System#nanoTime()} when the event has been recorded
+         */
+        public long getNanoTime() {
+            return nanoTime;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d %s: (%s) -> (%s) on %s", nanoTime, outcome, name(fromStateClass),
+                    name(toStateClass), name(eventClass));
+        }
+
+        private static String name(Class<?> clazz) {
+            return (clazz != null) ? clazz.getSimpleName() : "-";
+        }
+    }
+
+    private final Class<?>[] fromStateClasses;
+    private final Class<?>[] eventClasses;
+    private final Class<?>[] toStateClasses;
+    private final long[] nanoTimes;
+    private final Outcome[] outcomes;
+    private long recorded;
+
+    public FlightRecorder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        fromStateClasses = new Class[capacity];
+        eventClasses = new Class[capacity];
+        toStateClasses = new Class[capacity];
+        nanoTimes = new long[capacity];
+        outcomes = new Outcome[capacity];
+    }
+
+    /**
+     * Returns the recorder attached to the engine or null if the engine has no recorder
+     */
+    public static FlightRecorder of(Yatomata<?> engine) {
+        return (engine instanceof YatomataImpl) ? ((YatomataImpl<?>) engine).getFlightRecorder() : null;
+    }
+
+    /**
+     * Records the event, the states may be null
+     */
+    public void record(Object fromState, Object event, Object toState, Outcome outcome) {
+        final int index = (int) (recorded++ % outcomes.length);
+        fromStateClasses[index] = (fromState != null) ? fromState.getClass() : null;
+        eventClasses[index] = (event != null) ? event.getClass() : null;
+        toStateClasses[index] = (toState != null) ? toState.getClass() : null;
+        nanoTimes[index] = System.nanoTime();
+        outcomes[index] = outcome;
+    }
+
+    /**
+     * Returns the number of the events recorded since the creation, including the overwritten ones
+     */
+    public long getRecordedCount() {
+        return recorded;
+    }
+
+    /**
+     * Returns the recorded events from the oldest to the newest
+     */
+    public List<Entry> getEntries() {
+        final int capacity = outcomes.length;
+        final int size = (int) Math.min(recorded, capacity);
+        final List<Entry> result = new ArrayList<>(size);
+        for (long i = recorded - size; i < recorded; ++i) {
+            final int index = (int) (i % capacity);
+            result.add(new Entry(fromStateClasses[index], eventClasses[index], toStateClasses[index],
+                    nanoTimes[index], outcomes[index]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the recorded events from the oldest to the newest, one per line
+     */
+    public String dump() {
+        final StringBuilder result = new StringBuilder();
+        for (Entry entry : getEntries()) {
+            result.append(entry).append('\n');
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,184 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.GeneratedDispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import static java.lang.reflect.Modifier.isStatic;
+
+/**
+ * Invokes a single FSM method (hook or state initializer). The method is resolved into a {@link MethodHandle}
+ * once and adapted to the generic signature of its arity, so the invocation does not perform access checks
+ * and does not wrap the thrown exceptions: whatever the method throws is thrown as is.
+ *
+ * @author Ilya Sadykov
+ */
+abstract class HookInvoker {
+
+    static final int MAX_EXACT_ARITY = 4;
+
+    private final Method method;
+    private final int arity;
+
+    private HookInvoker(Method method) {
+        this.method = method;
+        this.arity = method.getParameterTypes().length;
+    }
+
+    /**
+     * Creates the invoker for the method. Falls back to the reflective call if the method handle cannot be
+     * obtained for it
+     */
+    public static HookInvoker create(Method method) {
+        try {
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            if (isStatic(method.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            final int arity = method.getParameterTypes().length;
+            handle = handle.asType(MethodType.genericMethodType(arity + 1));
+            if (arity > MAX_EXACT_ARITY) {
+                handle = handle.asSpreader(Object[].class, arity);
+            }
+            return new MethodHandleInvoker(method, handle);
+        } catch (IllegalAccessException e) {
+            return new ReflectiveInvoker(method);
+        }
+    }
+
+    /**
+     * Creates the invoker calling the method through the generated dispatcher
+     */
+    public static HookInvoker create(Method method, GeneratedDispatcher dispatcher, int index) {
+        return new DispatcherInvoker(method, dispatcher, index);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public int getArity() {
+        return arity;
+    }
+
+    /**
+     * Invokes the method on the target with the arguments
+     */
+    public abstract Object invoke(Object target, Object[] args) throws Throwable;
+
+    /**
+     * Invokes the method on the target taking each argument from the slot defined by the binding
+     */
+    public abstract Object invoke(Object target, Object[] slots, int[] binding) throws Throwable;
+
+    private static final class MethodHandleInvoker extends HookInvoker {
+        private final MethodHandle handle;
+
+        private MethodHandleInvoker(Method method, MethodHandle handle) {
+            super(method);
+            this.handle = handle;
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] args) throws Throwable {
+            switch (getArity()) {
+                case 0:
+                    return (Object) handle.invokeExact(target);
+                case 1:
+                    return (Object) handle.invokeExact(target, args[0]);
+                case 2:
+                    return (Object) handle.invokeExact(target, args[0], args[1]);
+                case 3:
+                    return (Object) handle.invokeExact(target, args[0], args[1], args[2]);
+                case 4:
+                    return (Object) handle.invokeExact(target, args[0], args[1], args[2], args[3]);
+                default:
+                    return (Object) handle.invokeExact(target, args);
+            }
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] slots, int[] binding) throws Throwable {
+            switch (getArity()) {
+                case 0:
+                    return (Object) handle.invokeExact(target);
+                case 1:
+                    return (Object) handle.invokeExact(target, slots[binding[0]]);
+                case 2:
+                    return (Object) handle.invokeExact(target, slots[binding[0]], slots[binding[1]]);
+                case 3:
+                    return (Object) handle.invokeExact(target, slots[binding[0]], slots[binding[1]],
+                            slots[binding[2]]);
+                case 4:
+                    return (Object) handle.invokeExact(target, slots[binding[0]], slots[binding[1]],
+                            slots[binding[2]], slots[binding[3]]);
+                default:
+                    return invoke(target, bind(slots, binding));
+            }
+        }
+    }
+
+    private static final class DispatcherInvoker extends HookInvoker {
+        private final GeneratedDispatcher dispatcher;
+        private final int index;
+
+        private DispatcherInvoker(Method method, GeneratedDispatcher dispatcher, int index) {
+            super(method);
+            this.dispatcher = dispatcher;
+            this.index = index;
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] args) throws Throwable {
+            final int arity = getArity();
+            return dispatcher.invoke(index, target,
+                    (arity > 0) ? args[0] : null,
+                    (arity > 1) ? args[1] : null,
+                    (arity > 2) ? args[2] : null,
+                    (arity > 3) ? args[3] : null);
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] slots, int[] binding) throws Throwable {
+            final int arity = getArity();
+            return dispatcher.invoke(index, target,
+                    (arity > 0) ? slots[binding[0]] : null,
+                    (arity > 1) ? slots[binding[1]] : null,
+                    (arity > 2) ? slots[binding[2]] : null,
+                    (arity > 3) ? slots[binding[3]] : null);
+        }
+    }
+
+    private static final class ReflectiveInvoker extends HookInvoker {
+
+        private ReflectiveInvoker(Method method) {
+            super(method);
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] args) throws Throwable {
+            try {
+                return getMethod().invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] slots, int[] binding) throws Throwable {
+            return invoke(target, bind(slots, binding));
+        }
+    }
+
+    private static Object[] bind(Object[] slots, int[] binding) {
+        final Object[] args = new Object[binding.length];
+        for (int i = 0; i < binding.length; ++i) {
+            args[i] = slots[binding[i]];
+        }
+        return args;
+    }
+}
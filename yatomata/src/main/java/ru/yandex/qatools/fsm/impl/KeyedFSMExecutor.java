@@ -0,0 +1,257 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.Yatomata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+/**
+ * Drives the FSM instances identified by the keys. Each key is bound to one of the fixed set of shards by its hash,
+ * each shard is served by the single thread owning the FSM instances of its keys. So the events of the same key are
+ * always processed in the order of their submission without any locking around {@link Yatomata#fire(Object)}.
+ * The shard queues are bounded: {@link #submit(Object, Object)} blocks while the queue of the shard is full.
+ * <p/>
+ * The FSM instance of the key is built by the builder on the first event of the key. Once the instance is completed,
+ * it is evicted and the next event of the same key starts the new instance. The builder must create the new FSM
+ * instance for each build (e.g. {@link FSMBuilder} created with the FSM class). The instances which never get
+ * completed are kept until {@link #remove(Object)} is called for their keys, so the keys of the abandoned FSM
+ * instances must be removed explicitly, otherwise they are kept forever.
+ * <p/>
+ * Any {@link Throwable} thrown while processing the event, including the errors thrown by the hooks, is passed to
+ * the callback and the shard keeps processing the events.
+ *
+ * @author Ilya Sadykov
+ */
+public class KeyedFSMExecutor<K, T> {
+
+    /**
+     * Receives the outcomes of the events processing. Methods are called from the shard threads.
+     */
+    public interface Callback<K, T> {
+        /**
+         * Called when the FSM instance of the key gets completed, right before its eviction
+         */
+        void onCompleted(K key, Yatomata<T> engine);
+
+        /**
+         * Called when the FSM instance could not be built or has thrown the exception while processing the event
+         */
+        void onFailed(K key, Object event, Throwable e);
+    }
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    static final int MAX_BATCH_SIZE = 256;
+
+    private static final Entry STOP = new Entry<>(null, null);
+    private static final Object REMOVE = new Object();
+
+    private final Yatomata.Builder<T> builder;
+    private final Callback<K, T> callback;
+    private final List<Shard> shards;
+    private volatile boolean shutdown = false;
+
+    /**
+     * Creates the executor with the shard per available processor
+     */
+    public KeyedFSMExecutor(Yatomata.Builder<T> builder, Callback<K, T> callback) {
+        this(builder, callback, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates the executor with the defined number of shards and the capacity of the queue of each shard.
+     * If the callback is null, the exceptions are passed to the uncaught exception handler of the shard thread.
+     */
+    public KeyedFSMExecutor(Yatomata.Builder<T> builder, Callback<K, T> callback, int shardsCount, int queueCapacity) {
+        if (shardsCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException(format("Invalid shards count %d or queue capacity %d!",
+                    shardsCount, queueCapacity));
+        }
+        this.builder = builder;
+        this.callback = callback;
+        this.shards = new ArrayList<>(shardsCount);
+        for (int i = 0; i < shardsCount; ++i) {
+            shards.add(new Shard(i, queueCapacity));
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * Submits the event for the FSM instance of the key. Blocks while the queue of the key's shard is full.
+     *
+     * @throws IllegalArgumentException   if the key is null
+     * @throws RejectedExecutionException if the executor is shut down
+     */
+    public void submit(K key, Object event) throws InterruptedException {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor is already shut down!");
+        }
+        shardOf(key).queue.put(new Entry<>(key, event));
+    }
+
+    /**
+     * Submits the event for the FSM instance of the key if the queue of the key's shard is not full.
+     *
+     * @return false if the queue is full
+     * @throws IllegalArgumentException   if the key is null
+     * @throws RejectedExecutionException if the executor is shut down
+     */
+    public boolean trySubmit(K key, Object event) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor is already shut down!");
+        }
+        return shardOf(key).queue.offer(new Entry<>(key, event));
+    }
+
+    /**
+     * Evicts the FSM instance of the key once the events of the key submitted before are processed, the next event
+     * of the key starts the new instance. Blocks while the queue of the key's shard is full.
+     *
+     * @throws IllegalArgumentException   if the key is null
+     * @throws RejectedExecutionException if the executor is shut down
+     */
+    public void remove(K key) throws InterruptedException {
+        submit(key, REMOVE);
+    }
+
+    /**
+     * Returns the number of shards
+     */
+    public int getShardsCount() {
+        return shards.size();
+    }
+
+    /**
+     * Stops accepting the new events. Events submitted before are processed, after that the shard threads exit.
+     * Events submitted concurrently with this method may be either rejected or dropped.
+     */
+    @SuppressWarnings("unchecked")
+    public void shutdown() throws InterruptedException {
+        shutdown = true;
+        for (Shard shard : shards) {
+            shard.queue.put(STOP);
+        }
+    }
+
+    /**
+     * Waits for the shard threads to exit after the shutdown
+     *
+     * @return false if the timeout has elapsed before all the threads exit
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Shard shard : shards) {
+            final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining > 0) {
+                shard.thread.join(remaining);
+            }
+            if (shard.thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Shard shardOf(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key must not be null!");
+        }
+        final int hash = key.hashCode();
+        return shards.get(((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % shards.size());
+    }
+
+    private void failed(K key, Object event, Throwable e) {
+        if (callback != null) {
+            try {
+                callback.onFailed(key, event, e);
+                return;
+            } catch (Throwable onE) {
+                // the handler gets the failure of the FSM, the failure of the callback is kept as suppressed
+                e.addSuppressed(onE);
+            }
+        }
+        final Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+
+    private static final class Entry<K> {
+        private final K key;
+        private final Object event;
+
+        private Entry(K key, Object event) {
+            this.key = key;
+            this.event = event;
+        }
+    }
+
+    /**
+     * Single-threaded owner of the FSM instances of its keys
+     */
+    private final class Shard implements Runnable {
+        private final BlockingQueue<Entry<K>> queue;
+        private final Map<K, Yatomata<T>> engines = new HashMap<>();
+        private final Thread thread;
+
+        private Shard(int index, int queueCapacity) {
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+            thread = new Thread(this, "yatomata-shard-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            final List<Entry<K>> batch = new ArrayList<>(MAX_BATCH_SIZE);
+            try {
+                while (true) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    for (Entry<K> entry : batch) {
+                        if (entry == STOP) {
+                            return;
+                        }
+                        if (entry.event == REMOVE) {
+                            engines.remove(entry.key);
+                        } else {
+                            process(entry.key, entry.event);
+                        }
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void process(K key, Object event) {
+            Yatomata<T> engine = engines.get(key);
+            try {
+                if (engine == null) {
+                    engine = builder.build();
+                    engines.put(key, engine);
+                }
+                engine.fire(event);
+            } catch (Throwable e) {
+                failed(key, event, e);
+            }
+            if (engine != null && engine.isCompleted()) {
+                engines.remove(key);
+                if (callback != null) {
+                    try {
+                        callback.onCompleted(key, engine);
+                    } catch (Throwable e) {
+                        failed(key, event, e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,697 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.GeneratedDispatcher;
+import ru.yandex.qatools.fsm.PoolableState;
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.StopConditionAware;
+import ru.yandex.qatools.fsm.TransitionListener;
+import ru.yandex.qatools.fsm.annotations.*;
+
+import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import static java.lang.String.format;
+import static ru.yandex.qatools.fsm.utils.ReflectUtils.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+class Metadata {
+
+    /**
+     * The metadata is kept by the FSM class itself, so it does not prevent the class loader of the FSM class from
+     * being collected
+     */
+    private static final ClassValue<FutureTask<ClassInfo>> cache = new ClassValue<FutureTask<ClassInfo>>() {
+        @Override
+        protected FutureTask<ClassInfo> computeValue(final Class<?> fsmClass) {
+            return new FutureTask<>(new Callable<ClassInfo>() {
+                @Override
+                public ClassInfo call() throws FSMException {
+                    final ClassInfo info = new ClassInfo<>(fsmClass);
+                    register(info);
+                    return info;
+                }
+            });
+        }
+    };
+
+    // the metadata built so far in the order of building, guarded by itself
+    private static final Deque<WeakReference<ClassInfo>> built = new ArrayDeque<>();
+    private static volatile int maxSize = Integer.getInteger("yatomata.metadata.maxSize", 0);
+    private static volatile int maxClassTuples = Integer.getInteger("yatomata.metadata.maxClassTuples", 0);
+    private static final int STATE_POOL_CAPACITY = Integer.getInteger("yatomata.statePool.capacity", 64);
+
+    @SuppressWarnings("unchecked")
+    private static final Class<? extends Annotation>[] METHOD_ANNOTATIONS = new Class[]{
+            OnTransit.class, BeforeTransit.class, AfterTransit.class, OnException.class
+    };
+
+    /**
+     * Returns the metadata of the FSM class. The metadata is built exactly once per class: concurrent callers
+     * wait for the thread that has started building it.
+     */
+    public static <T> ClassInfo get(final Class<T> fsmClass) throws FSMException {
+        final FutureTask<ClassInfo> task = cache.get(fsmClass);
+        // does nothing if the task has been already started
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FSMException(format("Interrupted while waiting for the metadata of FSM %s!", fsmClass), e);
+        } catch (ExecutionException e) {
+            cache.remove(fsmClass);
+            final Throwable cause = e.getCause();
+            if (cause instanceof FSMException) {
+                throw (FSMException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new FSMException(format("Failed to build the metadata of FSM %s!", fsmClass), cause);
+        }
+    }
+
+    /**
+     * Returns the metadata of all the FSM classes built successfully so far and not evicted
+     */
+    static List<ClassInfo> getCached() {
+        final List<ClassInfo> result = new ArrayList<>();
+        synchronized (built) {
+            for (WeakReference<ClassInfo> reference : built) {
+                final ClassInfo info = reference.get();
+                if (info != null) {
+                    result.add(info);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the metadata of the FSM class if it is built and not evicted or null, never builds it
+     */
+    static ClassInfo getIfCached(Class<?> fsmClass) {
+        synchronized (built) {
+            for (WeakReference<ClassInfo> reference : built) {
+                final ClassInfo info = reference.get();
+                if (info != null && info.getFsmClass() == fsmClass) {
+                    return info;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops the metadata of the FSM class, it is built again on the next use. The engines already using it are
+     * not affected.
+     */
+    static void evict(Class<?> fsmClass) {
+        synchronized (built) {
+            final Iterator<WeakReference<ClassInfo>> iterator = built.iterator();
+            while (iterator.hasNext()) {
+                final ClassInfo info = iterator.next().get();
+                if (info == null || info.getFsmClass() == fsmClass) {
+                    iterator.remove();
+                }
+            }
+        }
+        cache.remove(fsmClass);
+    }
+
+    /**
+     * Drops the metadata of all the FSM classes
+     */
+    static void clear() {
+        for (ClassInfo info : getCached()) {
+            evict(info.getFsmClass());
+        }
+    }
+
+    static int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the max number of the FSM classes with the metadata kept, the oldest metadata is evicted first.
+     * 0 means unbounded.
+     */
+    static void setMaxSize(int size) {
+        maxSize = size;
+        evictOverflow();
+    }
+
+    static int getMaxClassTuples() {
+        return maxClassTuples;
+    }
+
+    /**
+     * Sets the max number of the (state class, event class) tuples memoized by the metadata built afterwards.
+     * 0 means unbounded.
+     */
+    static void setMaxClassTuples(int size) {
+        maxClassTuples = size;
+    }
+
+    private static void register(ClassInfo info) {
+        synchronized (built) {
+            final Iterator<WeakReference<ClassInfo>> iterator = built.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().get() == null) {
+                    iterator.remove();
+                }
+            }
+            built.addLast(new WeakReference<>(info));
+        }
+        evictOverflow();
+    }
+
+    private static void evictOverflow() {
+        final List<Class<?>> evicted = new ArrayList<>();
+        synchronized (built) {
+            while (maxSize > 0 && built.size() > maxSize) {
+                final ClassInfo oldest = built.pollFirst().get();
+                if (oldest != null) {
+                    evicted.add(oldest.getFsmClass());
+                }
+            }
+        }
+        for (Class<?> fsmClass : evicted) {
+            cache.remove(fsmClass);
+        }
+    }
+
+    /**
+     * Returns the name of the dispatcher class generated for the FSM class
+     */
+    static String getGeneratedDispatcherName(Class<?> fsmClass) {
+        final String name = fsmClass.getName();
+        final int packageEnd = name.lastIndexOf('.');
+        return name.substring(0, packageEnd + 1) + name.substring(packageEnd + 1).replace('$', '_') +
+                GeneratedDispatcher.SUFFIX;
+    }
+
+    public static class ClassInfo<T> {
+        private static final Object NO_TRANSITION = new Object();
+        private static final Object NOT_SHARED = new Object();
+        private static final Object NOT_POOLED = new Object();
+
+        private final Class<T> fsmClass;
+        private final FSMDefinition<T> definition;
+        private final TransitionModel model;
+        private final boolean sharedHandler;
+        private final Map<Class<? extends Annotation>, Method[]> annotatedMethods;
+        private final Map<Class, Method> initStateMethods;
+        private final Method initStartStateMethod;
+        private final GeneratedDispatcher dispatcher;
+        private final Map<Method, HookInvoker> invokers;
+        private final Map<Method, ParameterBinding> bindings;
+        private final ClassTupleCache<Object> resolvedTransitions = new ClassTupleCache<>(maxClassTuples);
+        private final Map<Class<? extends Annotation>, ClassTupleCache<CallPlan>[]> callPlans;
+        private final boolean stoppedByCondition;
+        private final ConcurrentMap<Class, Object> sharedStates = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Class, Object> statePools = new ConcurrentHashMap<>();
+        private final long buildNanos;
+
+        ClassInfo(Class<T> fsmClass) throws FSMException {
+            final long started = System.nanoTime();
+            this.fsmClass = fsmClass;
+            this.definition = null;
+            final MethodsScan scan = scanMethods();
+            annotatedMethods = scan.annotatedMethods;
+            initStateMethods = scan.initStateMethods;
+            initStartStateMethod = scan.initStartStateMethod;
+            bindings = scan.bindings;
+            dispatcher = findGeneratedDispatcher();
+            invokers = buildInvokersCache();
+            callPlans = buildCallPlansCache();
+            stoppedByCondition = StopConditionAware.class.isAssignableFrom(fsmClass);
+            final FSM fsmConfig = findAnnotation(fsmClass, FSM.class);
+            if (fsmConfig == null) {
+                throw new StateMachineException("FSM class must have the @FSM annotation!");
+            }
+            sharedHandler = fsmConfig.sharedHandler();
+            if (sharedHandler && hasInstanceFields(fsmClass)) {
+                throw new FSMException(format("FSM %s shares the handler, so it must not have instance fields!",
+                        fsmClass));
+            }
+            final Transitions transitions = findAnnotation(fsmClass, Transitions.class);
+            if (transitions == null) {
+                throw new StateMachineException("FSM class must have the @Transitions annotation!");
+            }
+            model = TransitionModel.of(fsmConfig, transitions);
+            collectStateSuperClassesCache();
+            buildNanos = System.nanoTime() - started;
+        }
+
+        /**
+         * Builds the metadata of the FSM defined programmatically: there are no annotated methods to scan, the hooks
+         * and the state factories are called by the definition itself
+         */
+        ClassInfo(FSMDefinition<T> definition, TransitionModel model) {
+            final long started = System.nanoTime();
+            this.fsmClass = definition.getFSMClass();
+            this.definition = definition;
+            this.model = model;
+            this.sharedHandler = false;
+            annotatedMethods = new HashMap<>();
+            for (Class<? extends Annotation> annClass : METHOD_ANNOTATIONS) {
+                annotatedMethods.put(annClass, new Method[0]);
+            }
+            initStateMethods = new HashMap<>();
+            initStartStateMethod = null;
+            bindings = new HashMap<>();
+            dispatcher = null;
+            invokers = new HashMap<>();
+            callPlans = buildCallPlansCache();
+            stoppedByCondition = StopConditionAware.class.isAssignableFrom(fsmClass);
+            collectStateSuperClassesCache();
+            buildNanos = System.nanoTime() - started;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <A extends Annotation> A findAnnotation(Class<T> fsmClass, Class<A> aClass) {
+            for (Class clazz : ClassHierarchy.get(fsmClass)) {
+                if (clazz.getAnnotation(aClass) != null) {
+                    return (A) clazz.getAnnotation(aClass);
+                }
+            }
+            return null;
+        }
+
+        public Object initNewState(Object fsm, Class newStateClass, Object event) {
+            try {
+                final Object shared = getSharedState(newStateClass);
+                if (shared != null) {
+                    return shared;
+                }
+                final StatePool pool = getStatePool(newStateClass);
+                final Object pooled = (pool != null) ? pool.acquire() : null;
+                if (pooled != null) {
+                    return pooled;
+                }
+                if (definition != null) {
+                    final Object created = definition.newState(fsm, newStateClass, event);
+                    return (created != null) ? created : newInstance(newStateClass);
+                }
+                if (event != null) {
+                    for (Class cachedEventClass : initStateMethods.keySet()) {
+                        for (Class eventClass : ClassHierarchy.get(event.getClass())) {
+                            if (cachedEventClass.isAssignableFrom(eventClass)) {
+                                return getInvoker(initStateMethods.get(cachedEventClass))
+                                        .invoke(fsm, new Object[]{newStateClass, event});
+                            }
+                        }
+                    }
+                }
+                if (initStartStateMethod != null) {
+                    return getInvoker(initStartStateMethod).invoke(fsm, new Object[]{newStateClass});
+                }
+                return newInstance(newStateClass);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new StateMachineException("Could not instantiate new state!", e);
+            }
+        }
+
+        private Object newInstance(Class stateClass) throws Exception {
+            final Object state = (dispatcher != null) ? dispatcher.newState(stateClass) : null;
+            return (state != null) ? state : stateClass.newInstance();
+        }
+
+        /**
+         * Returns the instance of the state class shared by all the engines of this FSM class or null if the state
+         * class is not shared
+         */
+        Object getSharedState(Class stateClass) throws Exception {
+            Object shared = sharedStates.get(stateClass);
+            if (shared == null) {
+                final Object created = isSharedState(stateClass) ? newInstance(stateClass) : NOT_SHARED;
+                shared = sharedStates.putIfAbsent(stateClass, created);
+                if (shared == null) {
+                    shared = created;
+                }
+            }
+            return (shared != NOT_SHARED) ? shared : null;
+        }
+
+        /**
+         * Returns the state left by the engine to the pool if its class implements {@link PoolableState}, is not
+         * shared and is not created by the FSM itself, otherwise does nothing
+         */
+        public void releaseState(Object state) {
+            final StatePool pool = getStatePool(state.getClass());
+            if (pool != null) {
+                pool.release(state);
+            }
+        }
+
+        /**
+         * Returns the number of the pooled states of the class
+         */
+        int getPooledStatesCount(Class stateClass) {
+            final StatePool pool = getStatePool(stateClass);
+            return (pool != null) ? pool.size() : 0;
+        }
+
+        private StatePool getStatePool(Class<?> stateClass) {
+            Object pool = statePools.get(stateClass);
+            if (pool == null) {
+                final Object created = (PoolableState.class.isAssignableFrom(stateClass) && !isSharedState(stateClass)
+                        && !isCreatedByFSM(stateClass)) ? new StatePool(STATE_POOL_CAPACITY) : NOT_POOLED;
+                pool = statePools.putIfAbsent(stateClass, created);
+                if (pool == null) {
+                    pool = created;
+                }
+            }
+            return (pool != NOT_POOLED) ? (StatePool) pool : null;
+        }
+
+        /**
+         * Checks if the new states of the class are created by the FSM itself: by the factory of the definition or
+         * by the @NewState methods, which may create the state of any class. The pooled state would skip them.
+         */
+        private boolean isCreatedByFSM(Class<?> stateClass) {
+            if (definition != null) {
+                return definition.hasStateFactory(stateClass);
+            }
+            return initStartStateMethod != null || !initStateMethods.isEmpty();
+        }
+
+        private boolean isSharedState(Class<?> stateClass) {
+            if (stateClass.getAnnotation(SharedState.class) != null) {
+                return true;
+            }
+            if (!model.isSharedStates() || stateClass.isInterface() || Modifier.isAbstract(stateClass.getModifiers())) {
+                return false;
+            }
+            return !hasInstanceFields(stateClass);
+        }
+
+        private static boolean hasInstanceFields(Class<?> clazz) {
+            for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Checks if the single instance of the FSM class is shared by the engines, see {@link FSM#sharedHandler()}
+         */
+        public boolean isSharedHandler() {
+            return sharedHandler;
+        }
+
+        public Method[] getAnnotatedMethods(Class aClass) {
+            return annotatedMethods.get(aClass);
+        }
+
+        /**
+         * Returns the parameters of the hook method of this FSM class parsed when the metadata is built
+         */
+        public ParameterBinding getParameterBinding(Method method) {
+            return bindings.get(method);
+        }
+
+        /**
+         * Returns the invoker built for the annotated method of this FSM class
+         */
+        public HookInvoker getInvoker(Method method) {
+            return invokers.get(method);
+        }
+
+        /**
+         * Returns the plan of the hook calls for the annotation and the runtime classes of the parameters.
+         * Plans are memoized per (exception, from state, to state, event) classes tuple.
+         */
+        public CallPlan getCallPlan(Class<? extends Annotation> annClass, boolean singleCall,
+                                    ParametersProvider parameters) throws FSMException {
+            final ClassTupleCache<CallPlan> plans = callPlans.get(annClass)[singleCall ? 1 : 0];
+            final Class<?> exceptionClass = parameters.getSlotClass(ParametersProvider.EXCEPTION);
+            final Class<?> fromStateClass = parameters.getSlotClass(ParametersProvider.FROM_STATE);
+            final Class<?> toStateClass = parameters.getSlotClass(ParametersProvider.TO_STATE);
+            final Class<?> eventClass = parameters.getSlotClass(ParametersProvider.EVENT);
+            CallPlan plan = plans.get(exceptionClass, fromStateClass, toStateClass, eventClass);
+            if (plan == null) {
+                plan = plans.putIfAbsent(exceptionClass, fromStateClass, toStateClass, eventClass,
+                        BestMatchedAnnotatedMethodCaller.plan(this, annClass, singleCall, parameters));
+            }
+            return plan;
+        }
+
+        /**
+         * Returns the start state class followed by the state classes declared by the transitions in the order of
+         * their declaration, without duplicates and the ANY and PREVIOUS markers
+         */
+        public Class[] getStateClasses() {
+            return model.getStateClasses().clone();
+        }
+
+        /**
+         * Calls the hook methods of the transition and the @OnException methods if any of the hooks has failed
+         *
+         * @param listener the listener to notify about the hooks and the handled exception or null
+         * @return APPLIED if all the hooks succeeded, PRESERVED or ROLLED_BACK if the exception has been handled
+         */
+        public FlightRecorder.Outcome callHooks(T fsm, ParametersProvider parameters, TransitionListener listener,
+                                 Object fromState, Object toState, Object event) {
+            if (definition != null) {
+                return definition.callHooks(fsm, listener, fromState, toState, event);
+            }
+            try {
+                parameters.set(null, fromState, toState, event);
+                call(fsm, BeforeTransit.class, false, parameters, listener);
+                call(fsm, OnTransit.class, true, parameters, listener);
+                call(fsm, AfterTransit.class, false, parameters, listener);
+                return FlightRecorder.Outcome.APPLIED;
+            } catch (Throwable e) {
+                final boolean preserved;
+                try {
+                    final CallPlan called = call(fsm, OnException.class, true,
+                            parameters.set(e, fromState, toState, event), listener);
+                    if (called.isEmpty()) {
+                        throw new StateMachineException(format("Could not invoke transition callback method " +
+                                "with FSM %s  (%s) -> (%s) on %s!", fsm, fromState, toState, event), e);
+                    }
+                    preserved = called.isPreserving();
+                } catch (Throwable onE) {
+                    throw new StateMachineException(format("Could not invoke the @OnException method for FSM %s " +
+                            "while trying to transit (%s) -> (%s) on %s!", fsm, fromState, toState, event), e);
+                }
+                if (listener != null) {
+                    listener.onExceptionHandled(fsm, fromState, toState, event, e, preserved);
+                }
+                return preserved ? FlightRecorder.Outcome.PRESERVED : FlightRecorder.Outcome.ROLLED_BACK;
+            }
+        }
+
+        private CallPlan call(T fsm, Class<? extends Annotation> annClass, boolean singleCall,
+                              ParametersProvider parameters, TransitionListener listener) throws Throwable {
+            final CallPlan plan = getCallPlan(annClass, singleCall, parameters);
+            if (listener == null) {
+                plan.execute(fsm, parameters.getSlots());
+            } else {
+                plan.execute(fsm, parameters.getSlots(), listener);
+            }
+            return plan;
+        }
+
+        public Object initStartState(Object fsm) {
+            return initNewState(fsm, model.getStartStateClass(), null);
+        }
+
+        public boolean isCompleted(T fsm, Object newState, Object event, boolean stoppedByTransition) {
+            if (stoppedByCondition) {
+                return ((StopConditionAware) fsm).isStopRequired(newState, event) || stoppedByTransition;
+            }
+            return stoppedByTransition;
+        }
+
+        public Class<T> getFsmClass() {
+            return fsmClass;
+        }
+
+        /**
+         * Returns the time spent on building this metadata
+         */
+        public long getBuildNanos() {
+            return buildNanos;
+        }
+
+        /**
+         * Returns the copy of the class, its superclasses and interfaces from the process-wide cache
+         * (see {@link ClassHierarchy})
+         */
+        public Class[] getSuperClasses(Class clazz) {
+            return ClassHierarchy.getSuperclassesAndInterfaces(clazz);
+        }
+
+        /**
+         * Returns the transition matching the runtime classes of the state and the event or null if the event
+         * must be ignored. Both outcomes are memoized per (state class, event class) pair.
+         */
+        public TransitionModel.Transition findSingleTransition(Object currentState, Object event) {
+            final Class stateClass = currentState.getClass();
+            final Class eventClass = event.getClass();
+            Object resolved = resolvedTransitions.get(stateClass, eventClass);
+            if (resolved == null) {
+                final TransitionModel.Transition transition = resolveSingleTransition(stateClass, eventClass);
+                resolved = resolvedTransitions.putIfAbsent(stateClass, eventClass,
+                        (transition != null) ? transition : NO_TRANSITION);
+            }
+            return (resolved != NO_TRANSITION) ? (TransitionModel.Transition) resolved : null;
+        }
+
+        /**
+         * Resolves the transition for the runtime classes of the state and the event without the memoization:
+         * the first transition declared for the closest superclasses of the state and the event
+         */
+        TransitionModel.Transition resolveSingleTransition(Class currentStateClass, Class currentEventClass) {
+            final Class[] eventClasses = ClassHierarchy.get(currentEventClass);
+            for (Class stateClass : ClassHierarchy.get(currentStateClass)) {
+                for (Class eventClass : eventClasses) {
+                    final TransitionModel.Transition transition = model.find(stateClass, eventClass);
+                    if (transition != null) {
+                        return transition;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void collectStateSuperClassesCache() {
+            for (Class stateClass : model.getStateClasses()) {
+                ClassHierarchy.get(stateClass);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<Class<? extends Annotation>, ClassTupleCache<CallPlan>[]> buildCallPlansCache() {
+            Map<Class<? extends Annotation>, ClassTupleCache<CallPlan>[]> result = new HashMap<>();
+            for (Class<? extends Annotation> annClass : METHOD_ANNOTATIONS) {
+                result.put(annClass, new ClassTupleCache[]{
+                        new ClassTupleCache<>(maxClassTuples), new ClassTupleCache<>(maxClassTuples)});
+            }
+            return result;
+        }
+
+        /**
+         * Searches for the dispatcher generated by the yatomata-processor for the FSM class or its superclass
+         */
+        private GeneratedDispatcher findGeneratedDispatcher() throws FSMException {
+            for (Class clazz : ClassHierarchy.get(fsmClass)) {
+                if (clazz.getAnnotation(FSM.class) == null || clazz.getClassLoader() == null) {
+                    continue;
+                }
+                final String name = getGeneratedDispatcherName(clazz);
+                try {
+                    final Class<?> dispatcherClass = Class.forName(name, true, clazz.getClassLoader());
+                    return (GeneratedDispatcher) dispatcherClass.newInstance();
+                } catch (ClassNotFoundException ignored) {
+                    // there's no generated dispatcher for this class
+                } catch (Exception e) {
+                    throw new FSMException(format("Failed to instantiate the generated dispatcher %s!", name), e);
+                }
+            }
+            return null;
+        }
+
+        private Map<Method, HookInvoker> buildInvokersCache() {
+            final Map<String, Integer> generated = new HashMap<>();
+            if (dispatcher != null) {
+                final String[] signatures = dispatcher.getMethods();
+                for (int i = 0; i < signatures.length; ++i) {
+                    generated.put(signatures[i], i);
+                }
+            }
+            final List<Method> methods = new ArrayList<>(initStateMethods.values());
+            for (Method[] hooks : annotatedMethods.values()) {
+                methods.addAll(Arrays.asList(hooks));
+            }
+            if (initStartStateMethod != null) {
+                methods.add(initStartStateMethod);
+            }
+            Map<Method, HookInvoker> result = new HashMap<>();
+            for (Method method : methods) {
+                final Integer index = generated.get(getSignature(method));
+                result.put(method, (index != null && method.getParameterTypes().length <= HookInvoker.MAX_EXACT_ARITY) ?
+                        HookInvoker.create(method, dispatcher, index) : HookInvoker.create(method));
+            }
+            return result;
+        }
+
+        /**
+         * Collects the hook methods and the @NewState methods walking the class hierarchy once
+         */
+        private MethodsScan scanMethods() throws FSMException {
+            final Map<Class<? extends Annotation>, List<Method>> hooks = new HashMap<>();
+            for (Class<? extends Annotation> annClass : METHOD_ANNOTATIONS) {
+                hooks.put(annClass, new ArrayList<Method>());
+            }
+            final MethodsScan result = new MethodsScan();
+            for (Method method : getMethodsInClassHierarchy(fsmClass)) {
+                for (Annotation annotation : method.getDeclaredAnnotations()) {
+                    final Class<? extends Annotation> annClass = annotation.annotationType();
+                    if (annClass == NewState.class) {
+                        result.addNewStateMethod(method);
+                    } else if (hooks.containsKey(annClass)) {
+                        hooks.get(annClass).add(method);
+                        if (!result.bindings.containsKey(method)) {
+                            result.bindings.put(method, ParameterBinding.parse(method));
+                        }
+                    }
+                }
+            }
+            for (Map.Entry<Class<? extends Annotation>, List<Method>> entry : hooks.entrySet()) {
+                final List<Method> methods = entry.getValue();
+                result.annotatedMethods.put(entry.getKey(), methods.toArray(new Method[methods.size()]));
+            }
+            return result;
+        }
+    }
+
+    private static final class MethodsScan {
+        private final Map<Class<? extends Annotation>, Method[]> annotatedMethods = new HashMap<>();
+        private final Map<Class, Method> initStateMethods = new HashMap<>();
+        private final Map<Method, ParameterBinding> bindings = new HashMap<>();
+        private Method initStartStateMethod;
+
+        private void addNewStateMethod(Method method) throws FSMException {
+            final Class<?>[] types = method.getParameterTypes();
+            if (types.length > 1) {
+                initStateMethods.put(types[1], method);
+                return;
+            }
+            if (initStartStateMethod != null) {
+                throw new FSMException(format("Failed to use @NewState method %s because FSM is already using %s!",
+                        method.getName(), initStartStateMethod.getName()));
+            }
+            initStartStateMethod = method;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.yandex.qatools.fsm.impl;
+
+/**
+ * Controls the cache of the FSM metadata. The metadata is kept by the FSM class itself, so the class loaders of the
+ * FSM classes (e.g. of the redeployed plugins) are collected as usual. By default the cache is unbounded, the
+ * bounds can be set with the system properties {@code yatomata.metadata.maxSize} and
+ * {@code yatomata.metadata.maxClassTuples} or with this class.
+ * <p/>
+ * The evicted metadata is built again on the next use. The engines already built keep using their metadata.
+ *
+ * @author Ilya Sadykov
+ */
+public final class MetadataCache {
+
+    private MetadataCache() {
+    }
+
+    /**
+     * Returns the number of the FSM classes with the metadata cached
+     */
+    public static int size() {
+        return Metadata.getCached().size();
+    }
+
+    public static int getMaxSize() {
+        return Metadata.getMaxSize();
+    }
+
+    /**
+     * Sets the max number of the FSM classes with the metadata cached, the least recently built metadata is evicted
+     * first. 0 means unbounded.
+     */
+    public static void setMaxSize(int maxSize) {
+        Metadata.setMaxSize(maxSize);
+    }
+
+    public static int getMaxClassTuples() {
+        return Metadata.getMaxClassTuples();
+    }
+
+    /**
+     * Sets the max number of the (state class, event class) tuples with the transitions and the hooks resolved,
+     * which are memoized by the metadata of each FSM class. Once the bound is reached, the memoized tuples are
+     * dropped, so the events of the generated or proxy classes do not make the metadata grow forever.
+     * 0 means unbounded. Applies to the metadata built afterwards.
+     */
+    public static void setMaxClassTuples(int maxClassTuples) {
+        Metadata.setMaxClassTuples(maxClassTuples);
+    }
+
+    /**
+     * Drops the metadata of the FSM class
+     */
+    public static void evict(Class<?> fsmClass) {
+        Metadata.evict(fsmClass);
+    }
+
+    /**
+     * Drops the metadata of all the FSM classes
+     */
+    public static void clear() {
+        Metadata.clear();
+    }
+}
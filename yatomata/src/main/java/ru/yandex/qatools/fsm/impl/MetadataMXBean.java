@@ -0,0 +1,25 @@
+package ru.yandex.qatools.fsm.impl;
+
+/**
+ * Management interface of the FSM metadata cache registered by {@link YatomataMBeans}
+ *
+ * @author Ilya Sadykov
+ */
+public interface MetadataMXBean {
+
+    /**
+     * Returns the number of the FSM classes with the metadata built
+     */
+    int getCachedClassesCount();
+
+    /**
+     * Returns the names of the FSM classes with the metadata built
+     */
+    String[] getCachedClasses();
+
+    /**
+     * Returns the number of the state and the event classes within the process-wide superclasses cache shared by
+     * all the FSM classes
+     */
+    int getSuperClassesCacheSize();
+}
@@ -0,0 +1,100 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.annotations.Event;
+import ru.yandex.qatools.fsm.annotations.FromState;
+import ru.yandex.qatools.fsm.annotations.ToState;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+import static java.lang.String.format;
+
+/**
+ * Parameters of the hook method parsed once when the metadata is built: the parameter types and, if each parameter
+ * is annotated with @Event, @FromState or @ToState (or is the exception), the argument slot of
+ * {@link ParametersProvider} bound to each parameter.
+ *
+ * @author Ilya Sadykov
+ */
+final class ParameterBinding {
+
+    private final Class<?>[] parameterTypes;
+    private final int[] slots;
+    private final String error;
+
+    private ParameterBinding(Class<?>[] parameterTypes, int[] slots, String error) {
+        this.parameterTypes = parameterTypes;
+        this.slots = slots;
+        this.error = error;
+    }
+
+    /**
+     * Parses the parameters of the method. The invalid annotations are reported by {@link #bind(Object[])}, so the
+     * FSM fails only when such method is going to be called.
+     */
+    static ParameterBinding parse(Method method) {
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        final Annotation[][] allParametersAnnotations = method.getParameterAnnotations();
+        final int[] slots = new int[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; ++i) {
+            int slot = -1;
+            for (Annotation annotation : allParametersAnnotations[i]) {
+                final int annotatedSlot = getSlot(annotation.annotationType());
+                if (annotatedSlot >= 0 && slot >= 0) {
+                    return new ParameterBinding(parameterTypes, null, format("Invalid FSM method %s: " +
+                            "only one of @Event, @FromState, @ToState can be used on each parameter.",
+                            method.getName()));
+                }
+                slot = (annotatedSlot >= 0) ? annotatedSlot : slot;
+            }
+            //No need to annotate exception
+            if (Throwable.class.isAssignableFrom(parameterTypes[i])) {
+                slot = ParametersProvider.EXCEPTION;
+            }
+            if (slot < 0) {
+                return new ParameterBinding(parameterTypes, null, null);
+            }
+            slots[i] = slot;
+        }
+        return new ParameterBinding(parameterTypes, (slots.length > 0) ? slots : null, null);
+    }
+
+    /**
+     * Returns the parameter types of the method, the array must not be modified
+     */
+    Class<?>[] getParameterTypes() {
+        return parameterTypes;
+    }
+
+    /**
+     * Returns the slot binding for the argument values or null if the method does not have the annotated parameters
+     * or the values do not match the parameter types
+     */
+    int[] bind(Object[] values) throws FSMException {
+        if (error != null) {
+            throw new FSMException(error);
+        }
+        if (slots == null) {
+            return null;
+        }
+        for (int i = 0; i < slots.length; ++i) {
+            final Object value = values[slots[i]];
+            if (value != null && !parameterTypes[i].isInstance(value)) {
+                return null;
+            }
+        }
+        return slots;
+    }
+
+    private static int getSlot(Class<? extends Annotation> annClass) {
+        if (annClass == FromState.class) {
+            return ParametersProvider.FROM_STATE;
+        } else if (annClass == ToState.class) {
+            return ParametersProvider.TO_STATE;
+        } else if (annClass == Event.class) {
+            return ParametersProvider.EVENT;
+        }
+        return -1;
+    }
+}
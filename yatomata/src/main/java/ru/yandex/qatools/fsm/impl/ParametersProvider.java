@@ -0,0 +1,68 @@
+package ru.yandex.qatools.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class ParametersProvider {
+
+    static final int EXCEPTION = 0;
+
+    static final int FROM_STATE = 1;
+
+    static final int TO_STATE = 2;
+
+    static final int EVENT = 3;
+
+    static final int SLOTS_COUNT = 4;
+
+    private final Object[] slots = new Object[SLOTS_COUNT];
+
+    ParametersProvider() {
+    }
+
+    ParametersProvider(Throwable exception, Object fromState, Object toState, Object event) {
+        set(exception, fromState, toState, event);
+    }
+
+    ParametersProvider(Object fromState, Object toState, Object event) {
+        this(null, fromState, toState, event);
+    }
+
+    /**
+     * Replaces the argument values, so the same provider can be reused for the subsequent transitions
+     */
+    ParametersProvider set(Throwable exception, Object fromState, Object toState, Object event) {
+        slots[EXCEPTION] = exception;
+        slots[FROM_STATE] = fromState;
+        slots[TO_STATE] = toState;
+        slots[EVENT] = event;
+        return this;
+    }
+
+    /**
+     * Returns the argument values indexed by the slot constants
+     */
+    Object[] getSlots() {
+        return slots;
+    }
+
+    /**
+     * Returns the runtime class of the argument within the slot or null if there's no argument
+     */
+    Class<?> getSlotClass(int slot) {
+        return (slots[slot] != null) ? slots[slot].getClass() : null;
+    }
+
+    /**
+     * Returns the indexes of the slots which are not empty
+     */
+    List<Integer> provide() {
+        List<Integer> ret = new ArrayList<>();
+        for (int i = 0; i < slots.length; ++i) {
+            if (slots[i] != null) {
+                ret.add(i);
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,264 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.Yatomata;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * Writes the snapshots of the FSM engines into the byte buffer and restores the engines from them.
+ * The snapshot contains the FSM class name, the completion flag and the id of the current state class followed by
+ * the state payload written by the {@link StateCodec}. The state id is the index of the state class within the
+ * states declared by the FSM (see {@link Metadata.ClassInfo#getStateClasses()}), so it remains valid while the new
+ * states are appended to the end of the transitions list. Other state classes are written by their names and must
+ * be the subclasses of the declared states, otherwise the snapshot is rejected. The shared states
+ * (see {@link ru.yandex.qatools.fsm.annotations.SharedState}) are written without the payload and restored as the
+ * shared instances.
+ * <p/>
+ * The engines are restored by the {@link FSMBuilder}, so they get its listener, flight recorder and shared FSM
+ * instance. The restored engine gets the decoded state as is: the start state is not instantiated.
+ * If the buffer is too small, the {@link java.nio.BufferOverflowException} is thrown.
+ *
+ * @author Ilya Sadykov
+ */
+public class SnapshotCodec<T> {
+
+    /**
+     * Writes and reads the payload of the state, is not called for the shared states
+     */
+    public interface StateCodec {
+        /**
+         * Writes the content of the state into the buffer
+         */
+        void encode(Object state, ByteBuffer buffer);
+
+        /**
+         * Reads the content written by {@link #encode} and creates the state of the defined class
+         */
+        Object decode(Class<?> stateClass, ByteBuffer buffer);
+    }
+
+    /**
+     * Writes nothing and creates the states using their no-arg constructors. Suits the states without any content.
+     */
+    public static final StateCodec STATELESS = new StateCodec() {
+        @Override
+        public void encode(Object state, ByteBuffer buffer) {
+        }
+
+        @Override
+        public Object decode(Class<?> stateClass, ByteBuffer buffer) {
+            try {
+                return stateClass.newInstance();
+            } catch (Exception e) {
+                throw new StateMachineException(format("Could not instantiate the state %s!", stateClass), e);
+            }
+        }
+    };
+
+    static final byte VERSION = 1;
+    private static final short NAMED_STATE = -1;
+    private static final short NULL_STATE = -2;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final FSMBuilder<T> builder;
+    private final Metadata.ClassInfo<T> classInfo;
+    private final Class<T> fsmClass;
+    private final StateCodec stateCodec;
+    private final byte[] fsmClassName;
+    private final Class[] stateClasses;
+    private final Map<Class, Short> stateIds = new IdentityHashMap<>();
+
+    /**
+     * Creates the codec restoring the engines the same way as the {@link FSMBuilder} of the FSM class builds them
+     */
+    public SnapshotCodec(Class<T> fsmClass, StateCodec stateCodec) {
+        this(new FSMBuilder<>(fsmClass), stateCodec);
+    }
+
+    /**
+     * Creates the codec restoring the engines by the builder
+     */
+    public SnapshotCodec(FSMBuilder<T> builder, StateCodec stateCodec) {
+        this.builder = builder;
+        this.stateCodec = stateCodec;
+        try {
+            this.classInfo = builder.getClassInfo();
+        } catch (FSMException e) {
+            throw new StateMachineException("Could not read the metadata of FSM!", e);
+        }
+        this.fsmClass = classInfo.getFsmClass();
+        this.fsmClassName = fsmClass.getName().getBytes(UTF8);
+        this.stateClasses = classInfo.getStateClasses();
+        for (short i = 0; i < stateClasses.length; ++i) {
+            stateIds.put(stateClasses[i], i);
+        }
+    }
+
+    /**
+     * Writes the snapshot of the engine into the buffer
+     */
+    public void snapshot(Yatomata<? extends T> engine, ByteBuffer buffer) {
+        writeHeader(buffer, 1);
+        writeEngine(engine, buffer);
+    }
+
+    /**
+     * Writes the snapshots of the engines into the buffer, the FSM class name is written once
+     */
+    public void snapshotAll(Collection<? extends Yatomata<? extends T>> engines, ByteBuffer buffer) {
+        writeHeader(buffer, engines.size());
+        for (Yatomata<? extends T> engine : engines) {
+            writeEngine(engine, buffer);
+        }
+    }
+
+    /**
+     * Restores the engine from the snapshot with the FSM instance of the builder
+     */
+    public Yatomata<T> restore(ByteBuffer buffer) {
+        checkCount(readHeader(buffer));
+        return readEngine(buffer, newFSM());
+    }
+
+    /**
+     * Restores the engine from the snapshot with the defined FSM instance
+     */
+    public Yatomata<T> restore(ByteBuffer buffer, T fsm) {
+        checkCount(readHeader(buffer));
+        return readEngine(buffer, fsm);
+    }
+
+    /**
+     * Restores all the engines written by {@link #snapshotAll}, each with the FSM instance of the builder
+     */
+    public List<Yatomata<T>> restoreAll(ByteBuffer buffer) {
+        final int count = readHeader(buffer);
+        final List<Yatomata<T>> result = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            result.add(readEngine(buffer, newFSM()));
+        }
+        return result;
+    }
+
+    private void writeHeader(ByteBuffer buffer, int count) {
+        buffer.put(VERSION);
+        buffer.putShort((short) fsmClassName.length);
+        buffer.put(fsmClassName);
+        buffer.putInt(count);
+    }
+
+    private int readHeader(ByteBuffer buffer) {
+        final byte version = buffer.get();
+        if (version != VERSION) {
+            throw new StateMachineException(format("Unsupported snapshot version %d!", version));
+        }
+        final String name = readString(buffer);
+        if (!fsmClass.getName().equals(name)) {
+            throw new StateMachineException(format("Snapshot of FSM %s cannot be restored as %s!", name, fsmClass));
+        }
+        return buffer.getInt();
+    }
+
+    private void checkCount(int count) {
+        if (count != 1) {
+            throw new StateMachineException(format("Snapshot contains %d engines, use restoreAll!", count));
+        }
+    }
+
+    private void writeEngine(Yatomata<? extends T> engine, ByteBuffer buffer) {
+        final Object state = engine.getCurrentState();
+        buffer.put((byte) (engine.isCompleted() ? 1 : 0));
+        if (state == null) {
+            buffer.putShort(NULL_STATE);
+            return;
+        }
+        final Short id = stateIds.get(state.getClass());
+        if (id != null) {
+            buffer.putShort(id);
+        } else {
+            buffer.putShort(NAMED_STATE);
+            final byte[] name = state.getClass().getName().getBytes(UTF8);
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+        if (getSharedState(state.getClass()) == null) {
+            stateCodec.encode(state, buffer);
+        }
+    }
+
+    private Yatomata<T> readEngine(ByteBuffer buffer, T fsm) {
+        final boolean completed = buffer.get() != 0;
+        final short id = buffer.getShort();
+        Object state = null;
+        if (id != NULL_STATE) {
+            final Class<?> stateClass = (id == NAMED_STATE) ? namedStateClass(readString(buffer)) : stateClass(id);
+            state = getSharedState(stateClass);
+            if (state == null) {
+                state = stateCodec.decode(stateClass, buffer);
+            }
+        }
+        try {
+            return builder.build(fsm, state, completed);
+        } catch (FSMException e) {
+            throw new StateMachineException(format("Could not restore the FSM %s!", fsmClass), e);
+        }
+    }
+
+    private Object getSharedState(Class<?> stateClass) {
+        try {
+            return classInfo.getSharedState(stateClass);
+        } catch (Exception e) {
+            throw new StateMachineException(format("Could not instantiate the shared state %s!", stateClass), e);
+        }
+    }
+
+    private Class<?> stateClass(short id) {
+        if (id < 0 || id >= stateClasses.length) {
+            throw new StateMachineException(format("Unknown state id %d for FSM %s!", id, fsmClass));
+        }
+        return stateClasses[id];
+    }
+
+    /**
+     * Loads the state class written by its name without initializing it. The class must be the subclass of one of
+     * the declared states, so the snapshot cannot make the codec instantiate an arbitrary class.
+     */
+    private Class<?> namedStateClass(String name) {
+        final Class<?> stateClass;
+        try {
+            stateClass = Class.forName(name, false, fsmClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new StateMachineException(format("Could not load the state class %s!", name), e);
+        }
+        for (Class declared : stateClasses) {
+            if (declared.isAssignableFrom(stateClass)) {
+                return stateClass;
+            }
+        }
+        throw new StateMachineException(format("Class %s is not the state of FSM %s!", name, fsmClass));
+    }
+
+    private T newFSM() {
+        try {
+            return builder.getFSM();
+        } catch (Exception e) {
+            throw new StateMachineException(format("Could not instantiate the FSM %s!", fsmClass), e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -0,0 +1,60 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.PoolableState;
+import ru.yandex.qatools.fsm.StateMachineException;
+
+import static java.lang.String.format;
+
+/**
+ * Bounded pool of the reset instances of the single {@link PoolableState} class shared by all the engines of the FSM
+ * class. The pool is the preallocated stack, so neither taking nor returning the state allocates, and the state
+ * returned last (the one most likely to be in the CPU cache) is taken first. The states returned to the full pool
+ * are left to the garbage collector.
+ *
+ * @author Ilya Sadykov
+ */
+class StatePool {
+
+    // guarded by this
+    private final Object[] states;
+    private int size;
+
+    StatePool(int capacity) {
+        this.states = new Object[capacity];
+    }
+
+    /**
+     * Returns the pooled state or null if the pool is empty
+     */
+    synchronized Object acquire() {
+        if (size == 0) {
+            return null;
+        }
+        final Object state = states[--size];
+        states[size] = null;
+        return state;
+    }
+
+    /**
+     * Resets the state and returns it to the pool
+     */
+    void release(Object state) {
+        try {
+            ((PoolableState) state).reset();
+        } catch (RuntimeException e) {
+            throw new StateMachineException(format("Could not reset the state %s!", state), e);
+        }
+        synchronized (this) {
+            if (size < states.length) {
+                states[size++] = state;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of the states within the pool
+     */
+    synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,52 @@
+package ru.yandex.qatools.fsm.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spreading the updates of different threads over the padded cells, so the threads do not contend for
+ * the same cache line. The sum is not an atomic snapshot while the counter is being updated.
+ *
+ * @author Ilya Sadykov
+ */
+final class StripedCounter {
+
+    // 8 longs = 64 bytes between the cells
+    static final int PADDING = 8;
+    static final int STRIPES = stripesCount();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    void add(long value) {
+        cells.getAndAdd(cellIndex(), value);
+    }
+
+    void increment() {
+        add(1);
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; ++i) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private static int cellIndex() {
+        return stripe() * PADDING;
+    }
+
+    /**
+     * Returns the stripe of the current thread
+     */
+    static int stripe() {
+        final long id = Thread.currentThread().getId();
+        final int hash = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+        return hash & (STRIPES - 1);
+    }
+
+    private static int stripesCount() {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        return Integer.highestOneBit(Math.max(1, processors * 2 - 1)) << 1;
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.qatools.fsm.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Histogram spreading the updates of different threads over the stripes the same way as {@link StripedCounter}.
+ * Each stripe has its own padded array of the buckets, created on the first update of the stripe, so the threads
+ * do not contend for the same cache line. The sum is not an atomic snapshot while the histogram is being updated.
+ *
+ * @author Ilya Sadykov
+ */
+final class StripedHistogram {
+
+    private final int buckets;
+    private final AtomicReferenceArray<AtomicLongArray> stripes =
+            new AtomicReferenceArray<>(StripedCounter.STRIPES);
+
+    StripedHistogram(int buckets) {
+        this.buckets = buckets;
+    }
+
+    void increment(int bucket) {
+        final int stripe = StripedCounter.stripe();
+        AtomicLongArray cells = stripes.get(stripe);
+        if (cells == null) {
+            // padded on both sides, so the buckets do not share the cache line with the neighbour objects
+            stripes.compareAndSet(stripe, null, new AtomicLongArray(buckets + 2 * StripedCounter.PADDING));
+            cells = stripes.get(stripe);
+        }
+        cells.getAndIncrement(StripedCounter.PADDING + bucket);
+    }
+
+    long[] sum() {
+        final long[] result = new long[buckets];
+        for (int stripe = 0; stripe < stripes.length(); ++stripe) {
+            final AtomicLongArray cells = stripes.get(stripe);
+            if (cells != null) {
+                for (int i = 0; i < buckets; ++i) {
+                    result[i] += cells.get(StripedCounter.PADDING + i);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,252 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.annotations.FSM;
+import ru.yandex.qatools.fsm.annotations.Transit;
+import ru.yandex.qatools.fsm.annotations.Transitions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * Immutable model of the FSM transitions read once from the @FSM and @Transitions annotations (or built by
+ * {@link FSMDefinition}), so the runtime never calls the annotation methods cloning their array values. The
+ * transitions are indexed by the declared event class and by the declared from-state class.
+ *
+ * @author Ilya Sadykov
+ */
+final class TransitionModel {
+
+    private static final Transition[] NONE = new Transition[0];
+
+    private final Class<?> startStateClass;
+    private final boolean sharedStates;
+    private final Transition[] transitions;
+    private final Map<Class<?>, Transition[]> byEvent;
+    private final Map<Class<?>, Transition[]> byFromState;
+    private final Transition[] fromAnyState;
+    private final Class[] stateClasses;
+
+    TransitionModel(Class<?> startStateClass, boolean sharedStates, List<Transition> transitions) {
+        this.startStateClass = startStateClass;
+        this.sharedStates = sharedStates;
+        this.transitions = transitions.toArray(new Transition[transitions.size()]);
+        final Map<Class<?>, List<Transition>> byEvent = new HashMap<>();
+        final Map<Class<?>, List<Transition>> byFromState = new HashMap<>();
+        for (Transition transition : this.transitions) {
+            for (Class<?> eventClass : transition.on) {
+                addTo(byEvent, eventClass, transition);
+            }
+            for (Class<?> fromStateClass : transition.from) {
+                addTo(byFromState, fromStateClass, transition);
+            }
+        }
+        this.byEvent = toArrays(byEvent);
+        this.byFromState = toArrays(byFromState);
+        this.fromAnyState = getOrNone(this.byFromState, Transitions.ANY.class);
+        this.stateClasses = collectStateClasses();
+    }
+
+    /**
+     * Reads the model from the annotations of the FSM class
+     */
+    static TransitionModel of(FSM fsmConfig, Transitions transitionsConfig) {
+        final List<Transition> transitions = new ArrayList<>();
+        for (Transit transit : transitionsConfig.value()) {
+            transitions.add(new Transition(transit.from(), transit.on(), transit.to(), transit.stop()));
+        }
+        return new TransitionModel(fsmConfig.start(), fsmConfig.sharedStates(), transitions);
+    }
+
+    Class<?> getStartStateClass() {
+        return startStateClass;
+    }
+
+    boolean isSharedStates() {
+        return sharedStates;
+    }
+
+    /**
+     * Returns all the transitions in the order of their declaration, the array must not be modified
+     */
+    Transition[] getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * Returns the transitions declared on exactly this event class, the array must not be modified
+     */
+    Transition[] getByEvent(Class<?> eventClass) {
+        return getOrNone(byEvent, eventClass);
+    }
+
+    /**
+     * Returns the transitions declared from exactly this state class, the array must not be modified
+     */
+    Transition[] getByFromState(Class<?> fromStateClass) {
+        return getOrNone(byFromState, fromStateClass);
+    }
+
+    /**
+     * Returns the start state class followed by the state classes declared by the transitions in the order of
+     * their declaration, without duplicates and the ANY and PREVIOUS markers. The array must not be modified.
+     */
+    Class[] getStateClasses() {
+        return stateClasses;
+    }
+
+    /**
+     * Returns the transition declared for exactly these state and event classes or null. Scans the shorter of the
+     * lists indexed by the event class and by the state class, so nothing is allocated.
+     *
+     * @throws StateMachineException if there's more than one such transition
+     */
+    Transition find(Class<?> stateClass, Class<?> eventClass) {
+        final Transition[] onEvent = getOrNone(byEvent, eventClass);
+        if (onEvent.length == 0) {
+            return null;
+        }
+        final Transition[] fromState = getOrNone(byFromState, stateClass);
+        Transition found = null;
+        if (fromState.length + fromAnyState.length < onEvent.length) {
+            found = findOn(fromState, eventClass, null);
+            found = findOn(fromAnyState, eventClass, found);
+        } else {
+            for (Transition transition : onEvent) {
+                if (transition.isFrom(stateClass)) {
+                    found = checkSingle(found, transition);
+                }
+            }
+        }
+        return found;
+    }
+
+    private static Transition findOn(Transition[] transitions, Class<?> eventClass, Transition found) {
+        for (Transition transition : transitions) {
+            if (transition.isOn(eventClass)) {
+                found = checkSingle(found, transition);
+            }
+        }
+        return found;
+    }
+
+    private static Transition checkSingle(Transition found, Transition transition) {
+        if (found != null && found != transition) {
+            throw new StateMachineException("There's more than 1 transition found!");
+        }
+        return transition;
+    }
+
+    private Class[] collectStateClasses() {
+        final Set<Class> result = new LinkedHashSet<>();
+        result.add(startStateClass);
+        for (Transition transition : transitions) {
+            result.addAll(Arrays.asList(transition.from));
+            result.add(transition.to);
+        }
+        result.remove(Transitions.ANY.class);
+        result.remove(Transitions.PREVIOUS.class);
+        return result.toArray(new Class[result.size()]);
+    }
+
+    private static void addTo(Map<Class<?>, List<Transition>> index, Class<?> key, Transition transition) {
+        List<Transition> list = index.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            index.put(key, list);
+        }
+        if (!list.contains(transition)) {
+            list.add(transition);
+        }
+    }
+
+    private static Map<Class<?>, Transition[]> toArrays(Map<Class<?>, List<Transition>> index) {
+        final Map<Class<?>, Transition[]> result = new HashMap<>();
+        for (Map.Entry<Class<?>, List<Transition>> entry : index.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toArray(new Transition[entry.getValue().size()]));
+        }
+        return result;
+    }
+
+    private static Transition[] getOrNone(Map<Class<?>, Transition[]> index, Class<?> key) {
+        final Transition[] result = index.get(key);
+        return (result != null) ? result : NONE;
+    }
+
+    /**
+     * Single transition, the same as {@link Transit} but without the array values cloned on each access
+     */
+    static final class Transition {
+        private final Class[] from;
+        private final Class[] on;
+        private final Class to;
+        private final boolean stop;
+
+        Transition(Class[] from, Class[] on, Class to, boolean stop) {
+            if (to == null || from.length == 0 || on.length == 0) {
+                throw new StateMachineException("Transition must define from, on and to classes!");
+            }
+            for (Class clazz : from) {
+                checkNotNull(clazz);
+            }
+            for (Class clazz : on) {
+                checkNotNull(clazz);
+            }
+            this.from = from.clone();
+            this.on = on.clone();
+            this.to = to;
+            this.stop = stop;
+        }
+
+        /**
+         * Checks if the transition is declared from exactly this state class or from any state
+         */
+        boolean isFrom(Class<?> stateClass) {
+            for (Class clazz : from) {
+                if (clazz == stateClass || clazz == Transitions.ANY.class) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Checks if the transition is declared on exactly this event class
+         */
+        boolean isOn(Class<?> eventClass) {
+            for (Class clazz : on) {
+                if (clazz == eventClass) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Class getTo() {
+            return to;
+        }
+
+        boolean isStop() {
+            return stop;
+        }
+
+        @Override
+        public String toString() {
+            return format("Transition(from=%s, on=%s, to=%s, stop=%s)",
+                    Arrays.toString(from), Arrays.toString(on), to, stop);
+        }
+
+        private static void checkNotNull(Class clazz) {
+            if (clazz == null) {
+                throw new StateMachineException("Transition classes cannot be null!");
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.TransitionListener;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link TransitionListener} collecting the counters and the latency histograms of the transitions per
+ * (from state class, event class, to state class), the ignored events per (state class, event class) and the hook
+ * methods. The counters and the histograms are striped, so the same instance can be attached to the engines working
+ * within many threads. Once the statistics for the classes are created and each stripe is used once, recording does
+ * not allocate.
+ *
+ * @author Ilya Sadykov
+ */
+public class TransitionStatistics implements TransitionListener {
+
+    /**
+     * Number of the events and the histogram of their latencies. The bucket i of the histogram counts the latencies
+     * from 2^(i-1) inclusive to 2^i nanoseconds exclusive (the bucket 0 counts the zero latencies).
+     */
+    public static final class Stats {
+        public static final int BUCKETS = 64;
+
+        private final StripedCounter count = new StripedCounter();
+        private final StripedCounter totalNanos = new StripedCounter();
+        private final StripedHistogram histogram = new StripedHistogram(BUCKETS);
+
+        private void record(long nanos) {
+            count.increment();
+            if (nanos >= 0) {
+                totalNanos.add(nanos);
+                histogram.increment(BUCKETS - Long.numberOfLeadingZeros(nanos));
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long[] getHistogram() {
+            return histogram.sum();
+        }
+    }
+
+    private final ClassTupleCache<Stats> transitions = new ClassTupleCache<>();
+    private final ClassTupleCache<Stats> ignored = new ClassTupleCache<>();
+    private final ConcurrentMap<Method, Stats> hooks = new ConcurrentHashMap<>();
+    private final StripedCounter rolledBack = new StripedCounter();
+    private final StripedCounter preservedExceptions = new StripedCounter();
+    private final StripedCounter rolledBackExceptions = new StripedCounter();
+    private final StripedCounter completed = new StripedCounter();
+
+    @Override
+    public void onTransitionResolved(Object fsm, Object fromState, Object toState, Object event) {
+    }
+
+    @Override
+    public void onEventIgnored(Object fsm, Object state, Object event) {
+        final Class<?> stateClass = state.getClass();
+        final Class<?> eventClass = event.getClass();
+        Stats stats = ignored.get(stateClass, eventClass);
+        if (stats == null) {
+            stats = ignored.putIfAbsent(stateClass, eventClass, new Stats());
+        }
+        stats.record(-1);
+    }
+
+    @Override
+    public void onHookStarted(Object fsm, Method hook) {
+    }
+
+    @Override
+    public void onHookFinished(Object fsm, Method hook, long nanos, Throwable failure) {
+        Stats stats = hooks.get(hook);
+        if (stats == null) {
+            final Stats created = new Stats();
+            stats = hooks.putIfAbsent(hook, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        stats.record(nanos);
+    }
+
+    @Override
+    public void onExceptionHandled(Object fsm, Object fromState, Object toState, Object event, Throwable e,
+                                   boolean preserved) {
+        (preserved ? preservedExceptions : rolledBackExceptions).increment();
+    }
+
+    @Override
+    public void onTransitionFinished(Object fsm, Object fromState, Object toState, Object event, boolean applied,
+                                     long nanos) {
+        final Class<?> fromClass = fromState.getClass();
+        final Class<?> eventClass = event.getClass();
+        final Class<?> toClass = (toState != null) ? toState.getClass() : null;
+        Stats stats = transitions.get(fromClass, eventClass, toClass, null);
+        if (stats == null) {
+            stats = transitions.putIfAbsent(fromClass, eventClass, toClass, null, new Stats());
+        }
+        stats.record(nanos);
+        if (!applied) {
+            rolledBack.increment();
+        }
+    }
+
+    @Override
+    public void onCompleted(Object fsm, Object state, Object event) {
+        completed.increment();
+    }
+
+    /**
+     * Returns the statistics of the transitions between the states of the defined classes on the event of
+     * the defined class or null if there was no such transition
+     */
+    public Stats getTransitionStats(Class<?> fromStateClass, Class<?> eventClass, Class<?> toStateClass) {
+        return transitions.get(fromStateClass, eventClass, toStateClass, null);
+    }
+
+    /**
+     * Returns the statistics of the events of the defined class ignored within the state of the defined class
+     * or null if there was no such event
+     */
+    public Stats getIgnoredStats(Class<?> stateClass, Class<?> eventClass) {
+        return ignored.get(stateClass, eventClass);
+    }
+
+    /**
+     * Returns the statistics of the hook method invocations or null if it was not invoked
+     */
+    public Stats getHookStats(Method hook) {
+        return hooks.get(hook);
+    }
+
+    /**
+     * Returns the number of the transitions rolled back because of the exception
+     */
+    public long getRolledBackCount() {
+        return rolledBack.sum();
+    }
+
+    /**
+     * Returns the number of the exceptions handled by the @OnException methods
+     *
+     * @param preserved true to count the exceptions with the transition preserved, false to count the rolled back
+     */
+    public long getHandledExceptionsCount(boolean preserved) {
+        return (preserved ? preservedExceptions : rolledBackExceptions).sum();
+    }
+
+    /**
+     * Returns the number of the completed FSMs
+     */
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+}
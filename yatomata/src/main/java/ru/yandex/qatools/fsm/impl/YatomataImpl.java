@@ -0,0 +1,270 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.FireResult;
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.TransitionListener;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.*;
+
+import static java.lang.String.format;
+import static ru.yandex.qatools.fsm.annotations.Transitions.PREVIOUS;
+import static ru.yandex.qatools.fsm.impl.FlightRecorder.Outcome.*;
+import static ru.yandex.qatools.fsm.impl.Metadata.get;
+
+/**
+ * @author Ilya Sadykov
+ */
+class YatomataImpl<T> implements Yatomata<T> {
+    private final Class<T> fsmClass;
+    private Object currentState;
+    private boolean completed;
+    private T fsm;
+    private final Metadata.ClassInfo<T> fsmClassInfo;
+    // allocated by the first transition, so the engine which is built but never fired allocates nothing else
+    private ParametersProvider parameters;
+    private final TransitionListener listener;
+    private final FlightRecorder recorder;
+    private boolean firing = false;
+
+    /**
+     * Constructs the engine with the default state and initialize the new FSM instance
+     */
+    public YatomataImpl(Class<T> fsmClass) throws FSMException, IllegalAccessException, InstantiationException {
+        this(fsmClass, fsmClass.newInstance());
+    }
+
+    /**
+     * Constructs the engine with the default state and the defined FSM instance
+     */
+    public YatomataImpl(Class<T> fsmClass, T fsm) throws FSMException {
+        this(fsmClass, fsm, null, false);
+        initStartState();
+    }
+
+    /**
+     * Constructs the engine with the defined state
+     */
+    public YatomataImpl(Class<T> fsmClass, T fsm, Object currentState) throws FSMException {
+        this(fsmClass, fsm, currentState, false);
+    }
+
+    /**
+     * Constructs the engine with the defined state and completion flag, the start state is not instantiated
+     */
+    YatomataImpl(Class<T> fsmClass, T fsm, Object currentState, boolean completed) throws FSMException {
+        this(fsmClass, fsm, currentState, completed, null, null);
+    }
+
+    /**
+     * Constructs the engine with the defined state, completion flag, transition listener and flight recorder
+     */
+    @SuppressWarnings("unchecked")
+    YatomataImpl(Class<T> fsmClass, T fsm, Object currentState, boolean completed,
+                 TransitionListener listener, FlightRecorder recorder) throws FSMException {
+        this((Metadata.ClassInfo<T>) get(fsmClass), fsm, currentState, completed, listener, recorder);
+    }
+
+    /**
+     * Constructs the engine of the FSM described by the metadata, e.g. compiled from {@link FSMDefinition}
+     */
+    YatomataImpl(Metadata.ClassInfo<T> fsmClassInfo, T fsm, Object currentState, boolean completed,
+                 TransitionListener listener, FlightRecorder recorder) {
+        this.fsmClass = fsmClassInfo.getFsmClass();
+        this.listener = listener;
+        this.recorder = recorder;
+        this.fsm = fsm;
+        this.fsmClassInfo = fsmClassInfo;
+        this.currentState = currentState;
+        this.completed = completed;
+    }
+
+    /**
+     * Instantiates the start state and makes it current
+     */
+    void initStartState() {
+        this.currentState = fsmClassInfo.initStartState(fsm);
+    }
+
+    private ParametersProvider getParameters() {
+        if (parameters == null) {
+            parameters = new ParametersProvider();
+        }
+        return parameters;
+    }
+
+    /**
+     * Returns the flight recorder of this engine or null
+     */
+    FlightRecorder getFlightRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Returns the current state for the FSM
+     */
+    @Override
+    public Object getCurrentState() {
+        return currentState;
+    }
+
+    /**
+     * Checks if the FSM is already completed
+     */
+    @Override
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Returns the internal FSM class
+     */
+    @Override
+    public Class<T> getFSMClass() {
+        return fsmClass;
+    }
+
+    /**
+     * Returns the internal FSM instance
+     */
+    @Override
+    public T getFSM() {
+        return fsm;
+    }
+
+    /**
+     * Fires new event into the state machine
+     */
+    @Override
+    public Object fire(Object event) {
+        checkNotCompleted();
+        if (event != null) {
+            transit(event);
+        }
+        return currentState;
+    }
+
+    /**
+     * Fires the events into the state machine in order, the null events are skipped
+     */
+    @Override
+    public FireResult fireAll(Iterable<?> events) {
+        checkNotCompleted();
+        int applied = 0;
+        int ignored = 0;
+        for (Object event : events) {
+            if (event == null) {
+                continue;
+            }
+            if (transit(event)) {
+                ++applied;
+            } else {
+                ++ignored;
+            }
+            if (completed) {
+                break;
+            }
+        }
+        return new FireResult(currentState, applied, ignored);
+    }
+
+    private void checkNotCompleted() {
+        if (completed) {
+            throw new StateMachineException("State machine is already completed!");
+        }
+    }
+
+    /**
+     * Performs the transition for the event adding the flight record to the exception if the recorder is attached
+     *
+     * @return false if the event is ignored
+     */
+    private boolean transit(Object event) {
+        if (recorder == null) {
+            return doTransit(event);
+        }
+        final boolean nested = firing;
+        try {
+            return doTransit(event);
+        } catch (StateMachineException e) {
+            recorder.record(currentState, event, null, FAILED);
+            if (!nested) {
+                e.addSuppressed(new StateMachineException(
+                        format("Last transitions of FSM %s:%n%s", fsm, recorder.dump())));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Performs the transition for the event. Once the plans of the hook calls are memoized for the classes of the
+     * states and the event, the transition does not allocate anything except the objects created by the FSM itself.
+     *
+     * @return false if the event is ignored
+     */
+    private boolean doTransit(Object event) {
+        if (currentState == null) {
+            throw new StateMachineException("Current state cannot be null!");
+        }
+
+        // search for the single available transition
+        TransitionModel.Transition transit = fsmClassInfo.findSingleTransition(currentState, event);
+
+        // if the transition is not found, ignoring the event
+        if (transit == null) {
+            if (listener != null) {
+                listener.onEventIgnored(fsm, currentState, event);
+            }
+            if (recorder != null) {
+                recorder.record(currentState, event, null, IGNORED);
+            }
+            return false;
+        }
+        final Object fromState = currentState;
+        Object newState = currentState;
+
+        // if transition to is not to previous or to the same as before state
+        if (!transit.getTo().equals(PREVIOUS.class) && !transit.getTo().equals(currentState.getClass())) {
+            newState = fsmClassInfo.initNewState(fsm, transit.getTo(), event);
+        }
+        final long start = (listener != null) ? System.nanoTime() : 0;
+        if (listener != null) {
+            listener.onTransitionResolved(fsm, fromState, newState, event);
+        }
+        // the hook may fire the event into the same engine, so the parameters are reused only by the outer call
+        final boolean nested = firing;
+        final ParametersProvider parameters = nested ? new ParametersProvider() : getParameters();
+        final FlightRecorder.Outcome outcome;
+        // the state which is not used anymore and can be recycled, unless the hook has changed the current state
+        // by the nested event: nobody knows which of the states are still referenced then
+        Object left = null;
+        firing = true;
+        try {
+            outcome = fsmClassInfo.callHooks(fsm, parameters, listener, fromState, newState, event);
+            if (currentState == fromState) {
+                left = (outcome != ROLLED_BACK) ? fromState : newState;
+            }
+            if (outcome != ROLLED_BACK) {
+                currentState = newState;
+            }
+        } finally {
+            firing = nested;
+            parameters.set(null, null, null, null);
+        }
+        if (recorder != null) {
+            recorder.record(fromState, event, newState, outcome);
+        }
+        completed = fsmClassInfo.isCompleted(fsm, newState, event, transit.isStop());
+        if (listener != null) {
+            listener.onTransitionFinished(fsm, fromState, newState, event, outcome != ROLLED_BACK,
+                    System.nanoTime() - start);
+            if (completed) {
+                listener.onCompleted(fsm, currentState, event);
+            }
+        }
+        if (!nested && left != null && left != currentState) {
+            fsmClassInfo.releaseState(left);
+        }
+        return true;
+    }
+}
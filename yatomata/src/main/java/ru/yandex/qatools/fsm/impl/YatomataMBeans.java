@@ -0,0 +1,262 @@
+package ru.yandex.qatools.fsm.impl;
+
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.TransitionListener;
+import ru.yandex.qatools.fsm.TransitionListenerAdapter;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+
+/**
+ * Publishes the FSM metadata cache and the runtime statistics of the FSM classes as the MBeans. Nothing is
+ * registered until {@link #register()} is called. The statistics are collected from the engines this
+ * {@link TransitionListener} is attached to:
+ * <pre>
+ *     YatomataMBeans mbeans = new YatomataMBeans().register();
+ *     Yatomata&lt;MyFSM&gt; engine = new FSMBuilder&lt;&gt;(MyFSM.class).withListener(mbeans).build();
+ * </pre>
+ * The MBean of the FSM class is registered as {@code ru.yandex.qatools.fsm:type=FSM,name=<class name>} on its first
+ * event. The counters are striped, so the engines working within many threads do not contend for them. The
+ * statistics are kept by the name of the FSM class and never reference the class itself, so they do not prevent the
+ * class loaders of the FSM classes (e.g. of the redeployed plugins) from being collected: the redeployed class
+ * continues the statistics of the class it replaces, the same way as it takes over its MBean name.
+ *
+ * @author Ilya Sadykov
+ */
+public class YatomataMBeans extends TransitionListenerAdapter {
+
+    public static final String DOMAIN = "ru.yandex.qatools.fsm";
+
+    private final MBeanServer server;
+    private final ObjectName metadataName;
+    private final ConcurrentMap<String, FSMStatistics> statistics = new ConcurrentHashMap<>();
+    private volatile boolean registered;
+
+    /**
+     * Creates the MBeans registered within the platform MBean server
+     */
+    public YatomataMBeans() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public YatomataMBeans(MBeanServer server) {
+        this.server = server;
+        this.metadataName = objectName("type=Metadata");
+    }
+
+    /**
+     * Registers the metadata MBean and the MBeans of the FSM classes having the statistics already
+     */
+    public synchronized YatomataMBeans register() {
+        if (!registered) {
+            registerMBean(new MetadataInfo(), metadataName);
+            for (FSMStatistics stats : statistics.values()) {
+                registerMBean(stats, stats.name);
+            }
+            registered = true;
+        }
+        return this;
+    }
+
+    /**
+     * Unregisters all the MBeans, the statistics are still collected
+     */
+    public synchronized void unregister() {
+        if (registered) {
+            registered = false;
+            unregisterMBean(metadataName);
+            for (FSMStatistics stats : statistics.values()) {
+                unregisterMBean(stats.name);
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of the FSM class or null if there were no events for it
+     */
+    public FSMStatisticsMXBean getStatistics(Class<?> fsmClass) {
+        return statistics.get(fsmClass.getName());
+    }
+
+    @Override
+    public void onEventIgnored(Object fsm, Object state, Object event) {
+        statisticsOf(fsm).ignored.increment();
+    }
+
+    @Override
+    public void onHookFinished(Object fsm, Method hook, long nanos, Throwable failure) {
+        if (failure != null) {
+            statisticsOf(fsm).exceptions.increment();
+        }
+    }
+
+    @Override
+    public void onTransitionFinished(Object fsm, Object fromState, Object toState, Object event, boolean applied,
+                                     long nanos) {
+        final FSMStatistics stats = statisticsOf(fsm);
+        stats.transitions.increment();
+        stats.totalNanos.add(nanos);
+        stats.updateMax(nanos);
+    }
+
+    @Override
+    public void onCompleted(Object fsm, Object state, Object event) {
+        statisticsOf(fsm).completions.increment();
+    }
+
+    private FSMStatistics statisticsOf(Object fsm) {
+        final Class<?> fsmClass = fsm.getClass();
+        final FSMStatistics stats = statistics.get(fsmClass.getName());
+        return (stats != null) ? stats : createStatistics(fsmClass);
+    }
+
+    private synchronized FSMStatistics createStatistics(Class<?> fsmClass) {
+        final String className = fsmClass.getName();
+        FSMStatistics stats = statistics.get(className);
+        if (stats == null) {
+            // the metadata is built already by the engine firing the event, unless the engine is built from the
+            // definition, which has no metadata build time
+            final Metadata.ClassInfo info = Metadata.getIfCached(fsmClass);
+            stats = new FSMStatistics(className, objectName("type=FSM,name=" + ObjectName.quote(className)),
+                    (info != null) ? info.getBuildNanos() : 0);
+            statistics.put(className, stats);
+            if (registered) {
+                registerMBean(stats, stats.name);
+            }
+        }
+        return stats;
+    }
+
+    private void registerMBean(Object mbean, ObjectName name) {
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+        } catch (JMException e) {
+            throw new StateMachineException(format("Could not register the MBean %s!", name), e);
+        }
+    }
+
+    private void unregisterMBean(ObjectName name) {
+        try {
+            server.unregisterMBean(name);
+        } catch (InstanceNotFoundException ignored) {
+            // already unregistered by someone else
+        } catch (JMException e) {
+            throw new StateMachineException(format("Could not unregister the MBean %s!", name), e);
+        }
+    }
+
+    private static ObjectName objectName(String properties) {
+        try {
+            return new ObjectName(DOMAIN + ":" + properties);
+        } catch (JMException e) {
+            throw new StateMachineException(format("Invalid MBean name %s!", properties), e);
+        }
+    }
+
+    private static final class MetadataInfo implements MetadataMXBean {
+        @Override
+        public int getCachedClassesCount() {
+            return Metadata.getCached().size();
+        }
+
+        @Override
+        public String[] getCachedClasses() {
+            final List<Metadata.ClassInfo> cached = Metadata.getCached();
+            final String[] result = new String[cached.size()];
+            for (int i = 0; i < result.length; ++i) {
+                result[i] = cached.get(i).getFsmClass().getName();
+            }
+            return result;
+        }
+
+        @Override
+        public int getSuperClassesCacheSize() {
+            return ClassHierarchy.getCachedCount();
+        }
+    }
+
+    private static final class FSMStatistics implements FSMStatisticsMXBean {
+        private final String fsmClassName;
+        private final ObjectName name;
+        private final long metadataBuildNanos;
+        private final StripedCounter transitions = new StripedCounter();
+        private final StripedCounter ignored = new StripedCounter();
+        private final StripedCounter exceptions = new StripedCounter();
+        private final StripedCounter completions = new StripedCounter();
+        private final StripedCounter totalNanos = new StripedCounter();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private FSMStatistics(String fsmClassName, ObjectName name, long metadataBuildNanos) {
+            this.fsmClassName = fsmClassName;
+            this.name = name;
+            this.metadataBuildNanos = metadataBuildNanos;
+        }
+
+        private void updateMax(long nanos) {
+            // the max is written only when it grows, which is rare once the engines are warmed up
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        @Override
+        public String getFSMClass() {
+            return fsmClassName;
+        }
+
+        @Override
+        public long getFires() {
+            return getTransitions() + getIgnoredEvents();
+        }
+
+        @Override
+        public long getTransitions() {
+            return transitions.sum();
+        }
+
+        @Override
+        public long getIgnoredEvents() {
+            return ignored.sum();
+        }
+
+        @Override
+        public long getExceptions() {
+            return exceptions.sum();
+        }
+
+        @Override
+        public long getCompletions() {
+            return completions.sum();
+        }
+
+        @Override
+        public long getMeanFireNanos() {
+            final long count = getTransitions();
+            return (count == 0) ? 0 : totalNanos.sum() / count;
+        }
+
+        @Override
+        public long getMaxFireNanos() {
+            return maxNanos.get();
+        }
+
+        @Override
+        public long getMetadataBuildNanos() {
+            return metadataBuildNanos;
+        }
+    }
+}
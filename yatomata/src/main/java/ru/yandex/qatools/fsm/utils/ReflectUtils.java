@@ -1,10 +1,12 @@
 package ru.yandex.qatools.fsm.utils;
 
-import org.apache.commons.lang3.ArrayUtils;
+import ru.yandex.qatools.fsm.impl.ClassHierarchy;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -15,19 +17,18 @@ public class ReflectUtils {
     /**
      * Collect all superclasses and their interfaces of a class in the defined order:
      * Class -> its interfaces -> superclass -> its interfaces -> superclass of a superclass -> ...
+     * Each class is listed once, at the first position it is reachable at.
      */
     public static List<Class> collectAllSuperclassesAndInterfaces(final Class objClazz) {
-        List<Class> result = new ArrayList<>();
-        Class clazz = objClazz;
-        // search through superclasses
-        while (clazz != null) {
-            result.add(clazz);
-            for (Class iface : clazz.getInterfaces()) {
-                result.addAll(collectAllSuperclassesAndInterfaces(iface));
-            }
-            clazz = clazz.getSuperclass();
-        }
-        return result;
+        return new ArrayList<>(Arrays.asList(getSuperclassesAndInterfaces(objClazz)));
+    }
+
+    /**
+     * Returns the same classes as {@link #collectAllSuperclassesAndInterfaces(Class)} does as the new array
+     * (see {@link ClassHierarchy})
+     */
+    public static Class[] getSuperclassesAndInterfaces(final Class clazz) {
+        return ClassHierarchy.getSuperclassesAndInterfaces(clazz);
     }
 
     /**
@@ -46,12 +47,24 @@ public class ReflectUtils {
      * Searches for all methods within class hierarchy
      */
     public static Method[] getMethodsInClassHierarchy(Class<?> clazz) {
-        Method[] methods = {};
+        final List<Method> methods = new ArrayList<>();
         while (clazz != null) {
-            methods = ArrayUtils.addAll(methods, clazz.getDeclaredMethods());
+            Collections.addAll(methods, clazz.getDeclaredMethods());
             clazz = clazz.getSuperclass();
         }
-        return methods;
+        return methods.toArray(new Method[methods.size()]);
+    }
+
+    /**
+     * Returns the signature of the method in the form name(binary.name.of.Param1,binary.name.of.Param2)
+     */
+    public static String getSignature(Method method) {
+        final StringBuilder res = new StringBuilder(method.getName()).append('(');
+        final Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; ++i) {
+            res.append((i > 0) ? "," : "").append(types[i].getName());
+        }
+        return res.append(')').toString();
     }
 
     /**
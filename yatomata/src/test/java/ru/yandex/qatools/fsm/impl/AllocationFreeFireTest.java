@@ -0,0 +1,194 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.PoolableState;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.*;
+import ru.yandex.qatools.fsm.beans.Running;
+import ru.yandex.qatools.fsm.beans.TestEvent;
+import ru.yandex.qatools.fsm.beans.TestPassed;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class AllocationFreeFireTest {
+
+    private static final int WARMUP_FIRES = 20000;
+    private static final int MEASURED_FIRES = 10000;
+    // covers the allocations of the measurement itself, but not even a single object per fire
+    private static final long ALLOCATED_BYTES_BUDGET = 4096;
+
+    @FSM(start = Running.class)
+    @Transitions(@Transit(on = TestEvent.class))
+    public static class HookedStateMachine {
+        int before;
+        int on;
+        int after;
+
+        @BeforeTransit
+        public void beforeTransit(TestEvent event) {
+            ++before;
+        }
+
+        @OnTransit
+        public void onTransit(Running from, Running to, TestPassed event) {
+            ++on;
+        }
+
+        @AfterTransit
+        public void afterTransit(@Event TestEvent event, @ToState Running to) {
+            ++after;
+        }
+    }
+
+    public static class Toggle {
+    }
+
+    @SharedState
+    public static class SharedOn {
+    }
+
+    @SharedState
+    public static class SharedOff {
+    }
+
+    @FSM(start = SharedOff.class)
+    @Transitions({
+            @Transit(from = SharedOff.class, on = Toggle.class, to = SharedOn.class),
+            @Transit(from = SharedOn.class, on = Toggle.class, to = SharedOff.class)
+    })
+    public static class SharedStatesStateMachine {
+        int toggles;
+
+        @OnTransit
+        public void onToggle(Toggle event) {
+            ++toggles;
+        }
+    }
+
+    public static class PooledOn implements PoolableState {
+        int count;
+
+        @Override
+        public void reset() {
+            count = 0;
+        }
+    }
+
+    public static class PooledOff implements PoolableState {
+        int count;
+
+        @Override
+        public void reset() {
+            count = 0;
+        }
+    }
+
+    @FSM(start = PooledOff.class)
+    @Transitions({
+            @Transit(from = PooledOff.class, on = Toggle.class, to = PooledOn.class),
+            @Transit(from = PooledOn.class, on = Toggle.class, to = PooledOff.class)
+    })
+    public static class PooledStatesStateMachine {
+        int toggles;
+
+        @OnTransit
+        public void onToggle(Toggle event) {
+            ++toggles;
+        }
+    }
+
+    // thrown by the hook every time, so the measurement covers the handling and not the creation of the exception
+    private static final RuntimeException HOOK_FAILURE = new RuntimeException("hook failed", null, false, false) {
+    };
+
+    @FSM(start = SharedOff.class)
+    @Transitions({
+            @Transit(from = SharedOff.class, on = Toggle.class, to = SharedOn.class),
+            @Transit(from = SharedOn.class, on = Toggle.class, to = SharedOff.class)
+    })
+    public static class FailingHookStateMachine {
+        int handled;
+
+        @OnTransit
+        public void onToggle(Toggle event) {
+            throw HOOK_FAILURE;
+        }
+
+        @OnException(preserve = true)
+        public void onException(RuntimeException e, @Event Toggle event) {
+            ++handled;
+        }
+    }
+
+    @Test
+    public void testWarmFireDoesNotAllocate() {
+        assertFireDoesNotAllocate(new FSMBuilder<>(HookedStateMachine.class));
+    }
+
+    @Test
+    public void testWarmFireWithFlightRecorderDoesNotAllocate() {
+        assertFireDoesNotAllocate(new FSMBuilder<>(HookedStateMachine.class).withFlightRecorder(64));
+    }
+
+    @Test
+    public void testTransitionToSharedStateDoesNotAllocate() {
+        final Yatomata<SharedStatesStateMachine> engine = new FSMBuilder<>(SharedStatesStateMachine.class).build();
+        assertFiresDoNotAllocate(engine, new Toggle());
+        assertEquals(WARMUP_FIRES + MEASURED_FIRES, engine.getFSM().toggles);
+    }
+
+    @Test
+    public void testTransitionToPooledStateDoesNotAllocate() {
+        final Yatomata<PooledStatesStateMachine> engine = new FSMBuilder<>(PooledStatesStateMachine.class).build();
+        assertFiresDoNotAllocate(engine, new Toggle());
+        assertEquals(WARMUP_FIRES + MEASURED_FIRES, engine.getFSM().toggles);
+    }
+
+    @Test
+    public void testHandledHookExceptionDoesNotAllocate() {
+        final Yatomata<FailingHookStateMachine> engine = new FSMBuilder<>(FailingHookStateMachine.class).build();
+        final Object initial = engine.getCurrentState();
+        assertFiresDoNotAllocate(engine, new Toggle());
+        assertEquals(WARMUP_FIRES + MEASURED_FIRES, engine.getFSM().handled);
+        // preserved transitions: an even number of toggles brings the engine back to the initial shared state
+        assertSame(initial, engine.getCurrentState());
+    }
+
+    private static void assertFireDoesNotAllocate(FSMBuilder<HookedStateMachine> builder) {
+        final Yatomata<HookedStateMachine> engine = builder.build();
+        assertFiresDoNotAllocate(engine, new TestPassed());
+        assertEquals(WARMUP_FIRES + MEASURED_FIRES, engine.getFSM().on);
+        assertEquals(WARMUP_FIRES + MEASURED_FIRES, engine.getFSM().after);
+        assertEquals(WARMUP_FIRES + MEASURED_FIRES, engine.getFSM().before);
+    }
+
+    private static void assertFiresDoNotAllocate(Yatomata<?> engine, Object event) {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        for (int i = 0; i < WARMUP_FIRES; ++i) {
+            engine.fire(event);
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_FIRES; ++i) {
+            engine.fire(event);
+        }
+        final long allocated = allocations.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertTrue(String.format("Fire must not allocate: %d bytes allocated by %d fires", allocated, MEASURED_FIRES),
+                allocated <= ALLOCATED_BYTES_BUDGET);
+    }
+}
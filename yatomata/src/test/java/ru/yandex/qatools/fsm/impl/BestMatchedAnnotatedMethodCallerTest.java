@@ -7,6 +7,9 @@ import ru.yandex.qatools.fsm.annotations.OnException;
 import ru.yandex.qatools.fsm.annotations.Transit;
 import ru.yandex.qatools.fsm.annotations.Transitions;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.*;
 import static ru.yandex.qatools.fsm.impl.Metadata.get;
 
@@ -130,4 +133,18 @@ public class BestMatchedAnnotatedMethodCallerTest {
         verify(obj).mConcreteStateConcreteEvent(state, event);
         verifyNoMoreInteractions(obj);
     }
+
+    @Test
+    public void testCallPlanIsMemoized() throws Throwable {
+        Metadata.ClassInfo info = get(SomeClass.class);
+        CallPlan plan = info.getCallPlan(OnException.class, false,
+                new ParametersProvider(new BaseState(), new ConcreteEvent(), new Object()));
+        assertSame(plan, info.getCallPlan(OnException.class, false,
+                new ParametersProvider(new BaseState(), new ConcreteEvent(), new Object())));
+        assertEquals(5, plan.getMethods().size());
+        assertNotSame(plan, info.getCallPlan(OnException.class, true,
+                new ParametersProvider(new BaseState(), new ConcreteEvent(), new Object())));
+        assertNotSame(plan, info.getCallPlan(OnException.class, false,
+                new ParametersProvider(new ConcreteState(), new ConcreteEvent(), null)));
+    }
 }
@@ -0,0 +1,123 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.*;
+import ru.yandex.qatools.fsm.beans.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class ConcurrentMetadataTest {
+
+    private static final int THREADS = 16;
+    private static final int ENGINES_PER_THREAD = 200;
+
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class),
+            @Transit(from = Running.class, on = TestEvent.class),
+            @Transit(from = Running.class, on = ProcessCompleted.class, to = Idle.class),
+    })
+    public static class CountingStateMachine {
+        int started;
+        int tests;
+        int before;
+
+        @BeforeTransit
+        public void beforeTransit(Object event) {
+            ++before;
+        }
+
+        @OnTransit
+        public void onStart(Idle from, Running to, ProcessStarted event) {
+            ++started;
+        }
+
+        @OnTransit
+        public void onTest(Running state, TestEvent event) {
+            ++tests;
+        }
+    }
+
+    @FSM(start = Idle.class)
+    @Transitions(@Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class))
+    public static class OnceBuiltStateMachine {
+    }
+
+    @Test
+    public void testMetadataIsBuiltOnce() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Metadata.ClassInfo>> results = submit(new Callable<Metadata.ClassInfo>() {
+            @Override
+            public Metadata.ClassInfo call() throws Exception {
+                start.await();
+                return Metadata.get(OnceBuiltStateMachine.class);
+            }
+        });
+        start.countDown();
+        final Set<Metadata.ClassInfo> infos = Collections.newSetFromMap(new IdentityHashMap<Metadata.ClassInfo, Boolean>());
+        for (Future<Metadata.ClassInfo> result : results) {
+            infos.add(result.get());
+        }
+        assertEquals("All threads must get the same metadata instance", 1, infos.size());
+    }
+
+    @Test
+    public void testConcurrentFire() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<List<Yatomata<CountingStateMachine>>>> results = submit(
+                new Callable<List<Yatomata<CountingStateMachine>>>() {
+                    @Override
+                    public List<Yatomata<CountingStateMachine>> call() throws Exception {
+                        start.await();
+                        final List<Yatomata<CountingStateMachine>> engines = new ArrayList<>();
+                        for (int i = 0; i < ENGINES_PER_THREAD; ++i) {
+                            final Yatomata<CountingStateMachine> engine =
+                                    new FSMBuilder<>(CountingStateMachine.class).build();
+                            engine.fire(new ProcessStarted());
+                            engine.fire(new TestPassed());
+                            engine.fire(new TestStarted());
+                            engine.fire(new TestDropped());
+                            engine.fire(new ProcessCompleted());
+                            engine.fire(new TestPassed());
+                            engines.add(engine);
+                        }
+                        return engines;
+                    }
+                });
+        start.countDown();
+        for (Future<List<Yatomata<CountingStateMachine>>> result : results) {
+            for (Yatomata<CountingStateMachine> engine : result.get()) {
+                assertThat(engine.getCurrentState(), instanceOf(Idle.class));
+                assertEquals(1, engine.getFSM().started);
+                assertEquals(3, engine.getFSM().tests);
+                assertEquals(5, engine.getFSM().before);
+            }
+        }
+    }
+
+    private static <T> List<Future<T>> submit(Callable<T> task) {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<T>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; ++i) {
+                results.add(executor.submit(task));
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
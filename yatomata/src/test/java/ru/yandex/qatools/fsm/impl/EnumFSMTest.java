@@ -0,0 +1,199 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.FireResult;
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.StopConditionAware;
+import ru.yandex.qatools.fsm.TransitionListener;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class EnumFSMTest {
+
+    private static final int WARMUP_EVENTS = 20000;
+    private static final int MEASURED_EVENTS = 100000;
+    private static final long MEASUREMENT_BYTES_BUDGET = 4096;
+
+    public enum State {
+        IDLE, RUNNING, CANCELLING, COMPLETED
+    }
+
+    public enum Event {
+        START, TICK, CANCEL, COMPLETE, FAIL
+    }
+
+    public static class Handler {
+        final List<String> calls = new ArrayList<>();
+        int ticks;
+    }
+
+    public static class StoppingHandler extends Handler implements StopConditionAware<State, Event> {
+        @Override
+        public boolean isStopRequired(State state, Event event) {
+            return state == State.CANCELLING;
+        }
+    }
+
+    private static FSMDefinition.TransitionHook<Handler, State, State, Event> record(final String name) {
+        return new FSMDefinition.TransitionHook<Handler, State, State, Event>() {
+            @Override
+            public void call(Handler fsm, State fromState, State toState, Event event) {
+                fsm.calls.add(name + " " + fromState + " -> " + toState + " on " + event);
+            }
+        };
+    }
+
+    private static final EnumFSMDefinition<Handler, State, Event> LIFECYCLE =
+            EnumFSMDefinition.builder(Handler.class, State.class, Event.class)
+                    .start(State.IDLE)
+                    .transit(State.IDLE, Event.START, State.RUNNING)
+                    .transit(State.RUNNING, Event.TICK, State.RUNNING)
+                    .transit(State.RUNNING, Event.FAIL, State.CANCELLING)
+                    .transit(State.RUNNING, Event.COMPLETE, State.COMPLETED, true)
+                    .transitFromAny(Event.CANCEL, State.CANCELLING)
+                    .beforeTransit(null, Event.START, null, record("before"))
+                    .onTransit(State.RUNNING, Event.TICK, State.RUNNING,
+                            new FSMDefinition.TransitionHook<Handler, State, State, Event>() {
+                                @Override
+                                public void call(Handler fsm, State fromState, State toState, Event event) {
+                                    ++fsm.ticks;
+                                }
+                            })
+                    .onTransit(null, Event.FAIL, null,
+                            new FSMDefinition.TransitionHook<Handler, State, State, Event>() {
+                                @Override
+                                public void call(Handler fsm, State fromState, State toState, Event event) {
+                                    throw new IllegalStateException("failed");
+                                }
+                            })
+                    .onTransit(null, null, null, record("on"))
+                    .afterTransit(null, null, State.COMPLETED, record("after"))
+                    .onException(IllegalStateException.class, false,
+                            new FSMDefinition.ExceptionHook<Handler, IllegalStateException>() {
+                                @Override
+                                public void call(Handler fsm, IllegalStateException e,
+                                                 Object fromState, Object toState, Object event) {
+                                    fsm.calls.add("rolled back " + fromState + " -> " + toState);
+                                }
+                            })
+                    .build();
+
+    @Test
+    public void testHooksReceiveConstants() {
+        final EnumYatomata<Handler, State, Event> engine = new EnumFSMBuilder<>(LIFECYCLE).build();
+        assertSame(State.IDLE, engine.getState());
+        assertSame(State.RUNNING, engine.fire(Event.START));
+        assertSame(State.RUNNING, engine.fire(Event.TICK));
+        assertSame(State.RUNNING, engine.fire(Event.TICK));
+        assertSame(State.RUNNING, engine.fire(Event.FAIL));
+        assertFalse(engine.isCompleted());
+        assertSame(State.COMPLETED, engine.fire(Event.COMPLETE));
+        assertTrue(engine.isCompleted());
+
+        assertEquals(2, engine.getFSM().ticks);
+        assertEquals(Arrays.asList(
+                "before IDLE -> RUNNING on START",
+                "on IDLE -> RUNNING on START",
+                "rolled back RUNNING -> CANCELLING",
+                "on RUNNING -> COMPLETED on COMPLETE",
+                "after RUNNING -> COMPLETED on COMPLETE"), engine.getFSM().calls);
+    }
+
+    @Test
+    public void testUndeclaredEventsAreIgnored() {
+        final Handler handler = new Handler();
+        final EnumYatomata<Handler, State, Event> engine = new EnumFSMBuilder<>(LIFECYCLE, handler).build();
+        assertSame(State.IDLE, engine.fire(Event.TICK));
+        assertSame(State.IDLE, engine.fire("not an event"));
+        final FireResult result = engine.fireAll(Arrays.asList(Event.START, Event.START, Event.CANCEL));
+        assertSame(State.CANCELLING, result.getState());
+        assertEquals(2, result.getApplied());
+        assertEquals(1, result.getIgnored());
+        assertSame(handler, engine.getFSM());
+        assertSame(Handler.class, engine.getFSMClass());
+    }
+
+    @Test
+    public void testListenersAreCombined() {
+        final TransitionListener first = mock(TransitionListener.class);
+        final TransitionListener second = mock(TransitionListener.class);
+        final EnumYatomata<Handler, State, Event> engine =
+                new EnumFSMBuilder<>(LIFECYCLE).withListener(first).withListener(second).build();
+        engine.fire(Event.START);
+        for (TransitionListener listener : Arrays.asList(first, second)) {
+            verify(listener).onTransitionResolved(engine.getFSM(), State.IDLE, State.RUNNING, Event.START);
+        }
+    }
+
+    @Test
+    public void testBuildWithState() {
+        final EnumYatomata<Handler, State, Event> engine =
+                new EnumFSMBuilder<>(LIFECYCLE).build(State.RUNNING);
+        assertSame(State.COMPLETED, engine.fire(Event.COMPLETE));
+        assertTrue(engine.isCompleted());
+        try {
+            engine.fire(Event.START);
+            fail("Completed FSM must reject the events");
+        } catch (StateMachineException ignored) {
+        }
+    }
+
+    @Test
+    public void testStopCondition() {
+        final EnumFSMDefinition<StoppingHandler, State, Event> definition =
+                EnumFSMDefinition.builder(StoppingHandler.class, State.class, Event.class)
+                        .start(State.IDLE)
+                        .transit(State.IDLE, Event.START, State.RUNNING)
+                        .transitFromAny(Event.CANCEL, State.CANCELLING)
+                        .build();
+        final EnumYatomata<StoppingHandler, State, Event> engine = new EnumFSMBuilder<>(definition).build();
+        engine.fire(Event.START);
+        assertFalse(engine.isCompleted());
+        engine.fire(Event.CANCEL);
+        assertTrue(engine.isCompleted());
+    }
+
+    @Test(expected = StateMachineException.class)
+    public void testDuplicateTransitionIsRejected() {
+        EnumFSMDefinition.builder(Handler.class, State.class, Event.class)
+                .start(State.IDLE)
+                .transit(State.IDLE, Event.CANCEL, State.COMPLETED)
+                .transitFromAny(Event.CANCEL, State.CANCELLING);
+    }
+
+    @Test
+    public void testFireDoesNotAllocate() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        final EnumYatomata<Handler, State, Event> engine = new EnumFSMBuilder<>(LIFECYCLE).build(State.RUNNING);
+        for (int i = 0; i < WARMUP_EVENTS; ++i) {
+            engine.fire(Event.TICK);
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_EVENTS; ++i) {
+            engine.fire(Event.TICK);
+        }
+        final long allocated = allocations.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertEquals(WARMUP_EVENTS + MEASURED_EVENTS, engine.getFSM().ticks);
+        assertTrue(String.format("Transition must not allocate: %d bytes allocated by %d events",
+                allocated, MEASURED_EVENTS), allocated <= MEASUREMENT_BYTES_BUDGET);
+    }
+}
@@ -0,0 +1,168 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.TransitionListenerAdapter;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.Transitions;
+import ru.yandex.qatools.fsm.beans.*;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class FSMDefinitionTest {
+
+    public static class Handler {
+        final List<String> calls = new ArrayList<>();
+    }
+
+    private static FSMDefinition.TransitionHook<Handler, Object, Object, Object> record(final String name) {
+        return new FSMDefinition.TransitionHook<Handler, Object, Object, Object>() {
+            @Override
+            public void call(Handler fsm, Object fromState, Object toState, Object event) {
+                fsm.calls.add(name);
+            }
+        };
+    }
+
+    static final FSMDefinition<Handler> LIFECYCLE = FSMDefinition.builder(Handler.class)
+            .start(Idle.class)
+            .transit(Idle.class, ProcessStarted.class, Running.class)
+            .transit(Running.class, TestEvent.class, Transitions.PREVIOUS.class)
+            .transit(Running.class, ProcessCompleted.class, CompletedCounterState.class, true)
+            .beforeTransit(Object.class, Object.class, Object.class, record("before"))
+            .onTransit(Idle.class, ProcessStarted.class, Running.class,
+                    new FSMDefinition.TransitionHook<Handler, Idle, Running, ProcessStarted>() {
+                        @Override
+                        public void call(Handler fsm, Idle fromState, Running toState, ProcessStarted event) {
+                            fsm.calls.add("started");
+                        }
+                    })
+            .onTransit(Object.class, Object.class, Object.class, record("on"))
+            .afterTransit(Running.class, TestEvent.class, Running.class, record("afterTest"))
+            .afterTransit(Object.class, Object.class, Object.class, record("after"))
+            .newState(CompletedCounterState.class,
+                    new FSMDefinition.StateFactory<Handler, CompletedCounterState>() {
+                        @Override
+                        public CompletedCounterState create(Handler fsm, Object event) {
+                            fsm.calls.add("new " + event.getClass().getSimpleName());
+                            return new CompletedCounterState();
+                        }
+                    })
+            .build();
+
+    @Test
+    public void testHooksAreCalledInOrder() {
+        final Yatomata<Handler> engine = new FSMBuilder<>(LIFECYCLE).build();
+        assertThat(engine.getCurrentState(), instanceOf(Idle.class));
+        final Object running = engine.fire(new ProcessStarted());
+        assertThat(running, instanceOf(Running.class));
+        assertSame(running, engine.fire(new TestPassed()));
+        assertFalse(engine.isCompleted());
+        assertThat(engine.fire(new ProcessCompleted()), instanceOf(CompletedCounterState.class));
+        assertTrue(engine.isCompleted());
+
+        assertEquals(Arrays.asList(
+                "before", "started", "after",
+                "before", "on", "afterTest", "after",
+                "new ProcessCompleted", "before", "on", "after"), engine.getFSM().calls);
+    }
+
+    @Test
+    public void testDefinitionIsSharedByEngines() {
+        final Handler first = new Handler();
+        final Handler second = new Handler();
+        final Yatomata<Handler> firstEngine = new FSMBuilder<>(LIFECYCLE, first).build();
+        final Yatomata<Handler> secondEngine = new FSMBuilder<>(LIFECYCLE, second).build();
+        firstEngine.fire(new ProcessStarted());
+        assertThat(firstEngine.getCurrentState(), instanceOf(Running.class));
+        assertThat(secondEngine.getCurrentState(), instanceOf(Idle.class));
+        assertEquals(Arrays.asList("before", "started", "after"), first.calls);
+        assertTrue(second.calls.isEmpty());
+        assertSame(Handler.class, firstEngine.getFSMClass());
+        assertArrayEquals(new Class[]{Idle.class, Running.class, CompletedCounterState.class},
+                LIFECYCLE.getStateClasses());
+    }
+
+    @Test
+    public void testExceptionHooks() {
+        final FSMDefinition.TransitionHook<Handler, Object, Object, Object> failing =
+                new FSMDefinition.TransitionHook<Handler, Object, Object, Object>() {
+                    @Override
+                    public void call(Handler fsm, Object fromState, Object toState, Object event) {
+                        if (event instanceof ProcessCompleted) {
+                            throw new UnsupportedOperationException("unsupported");
+                        }
+                        throw new IllegalStateException("failed");
+                    }
+                };
+        final FSMDefinition<Handler> definition = FSMDefinition.builder(Handler.class)
+                .start(Idle.class)
+                .transit(Idle.class, ProcessStarted.class, Running.class)
+                .transit(Idle.class, ProcessFailed.class, Cancelling.class)
+                .transit(Idle.class, ProcessCompleted.class, CompletedCounterState.class)
+                .onTransit(Idle.class, Object.class, Object.class, failing)
+                .onException(IllegalStateException.class, false,
+                        new FSMDefinition.ExceptionHook<Handler, IllegalStateException>() {
+                            @Override
+                            public void call(Handler fsm, IllegalStateException e,
+                                             Object fromState, Object toState, Object event) {
+                                if (event instanceof ProcessFailed) {
+                                    throw new IllegalArgumentException("cannot handle");
+                                }
+                                fsm.calls.add("rolled back " + e.getMessage());
+                            }
+                        })
+                .onException(Throwable.class, true,
+                        new FSMDefinition.ExceptionHook<Handler, Throwable>() {
+                            @Override
+                            public void call(Handler fsm, Throwable e, Object fromState, Object toState,
+                                             Object event) {
+                                fsm.calls.add("preserved");
+                            }
+                        })
+                .build();
+        final Yatomata<Handler> engine = new FSMBuilder<>(definition).build();
+        assertThat(engine.fire(new ProcessStarted()), instanceOf(Idle.class));
+        assertEquals(Arrays.asList("rolled back failed"), engine.getFSM().calls);
+        try {
+            engine.fire(new ProcessFailed());
+            fail("Failed exception hook must fail the transition");
+        } catch (StateMachineException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+        assertThat(engine.getCurrentState(), instanceOf(Idle.class));
+        assertThat(engine.fire(new ProcessCompleted()), instanceOf(CompletedCounterState.class));
+        assertEquals(Arrays.asList("rolled back failed", "preserved"), engine.getFSM().calls);
+    }
+
+    @Test
+    public void testListenerReceivesHookMethods() {
+        final List<Method> hooks = new ArrayList<>();
+        final Yatomata<Handler> engine = new FSMBuilder<>(LIFECYCLE).withListener(new TransitionListenerAdapter() {
+            @Override
+            public void onHookFinished(Object fsm, Method hook, long nanos, Throwable failure) {
+                hooks.add(hook);
+            }
+        }).build();
+        engine.fire(new ProcessStarted());
+        assertEquals(3, hooks.size());
+        for (Method hook : hooks) {
+            assertEquals("call", hook.getName());
+            assertSame(FSMDefinitionTest.class, hook.getDeclaringClass().getEnclosingClass());
+        }
+    }
+
+    @Test(expected = StateMachineException.class)
+    public void testStartStateIsRequired() {
+        FSMDefinition.builder(Handler.class).transit(Idle.class, ProcessStarted.class, Running.class).build();
+    }
+}
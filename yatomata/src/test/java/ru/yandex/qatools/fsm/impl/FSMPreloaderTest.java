@@ -0,0 +1,129 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.annotations.FSM;
+import ru.yandex.qatools.fsm.annotations.NewState;
+import ru.yandex.qatools.fsm.annotations.Transit;
+import ru.yandex.qatools.fsm.annotations.Transitions;
+import ru.yandex.qatools.fsm.beans.Idle;
+import ru.yandex.qatools.fsm.beans.TestEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class FSMPreloaderTest {
+
+    @FSM(start = Idle.class)
+    @Transitions(@Transit(on = TestEvent.class))
+    public static class DuplicateStartStateMachine {
+        @NewState
+        public Object first() {
+            return new Idle();
+        }
+
+        @NewState
+        public Object second() {
+            return new Idle();
+        }
+    }
+
+    @FSM(start = Idle.class)
+    @Transitions(@Transit(on = TestEvent.class))
+    public static class InheritedDuplicateStartStateMachine extends DuplicateStartStateMachine {
+    }
+
+    @FSM(start = Idle.class)
+    @Transitions(@Transit(on = TestEvent.class))
+    public static class SequentiallyPreloadedStateMachine {
+    }
+
+    @FSM(start = Idle.class)
+    @Transitions(@Transit(on = TestEvent.class))
+    public static class ConcurrentlyPreloadedStateMachine {
+    }
+
+    @Test
+    public void testFindFSMClassesInPackage() throws FSMException {
+        final List<Class<?>> classes = FSMPreloader.findFSMClasses(getClass().getPackage().getName(),
+                getClass().getClassLoader());
+        assertTrue(classes.contains(FireAllTest.CountingStateMachine.class));
+        assertTrue(classes.contains(DuplicateStartStateMachine.class));
+        assertFalse(classes.contains(FireAllTest.class));
+    }
+
+    @Test
+    public void testPreloadBuildsMetadata() throws FSMException {
+        final List<Class<?>> classes = Arrays.<Class<?>>asList(FireAllTest.CountingStateMachine.class,
+                SharedStateTest.SharedStatesStateMachine.class, SharedStateTest.MarkedStateMachine.class);
+        FSMPreloader.preload(classes);
+        final List<Class<?>> cached = new ArrayList<>();
+        for (Metadata.ClassInfo info : Metadata.getCached()) {
+            cached.add(info.getFsmClass());
+        }
+        assertTrue(cached.containsAll(classes));
+    }
+
+    @Test
+    public void testPreloadFailure() {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            FSMPreloader.preload(Arrays.<Class<?>>asList(DuplicateStartStateMachine.class,
+                    FireAllTest.CountingStateMachine.class), executor);
+            fail("Preloading of the incorrect FSM must fail");
+        } catch (FSMException e) {
+            assertTrue(e.getMessage().contains("@NewState"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAllClassesArePreloadedDespiteFailures() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertPreloadsAllAndFails(ConcurrentlyPreloadedStateMachine.class, new Preload() {
+                @Override
+                public void preload(List<Class<?>> classes) throws FSMException {
+                    FSMPreloader.preload(classes, executor);
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSequentialPreloadFailsLikeConcurrent() throws Exception {
+        assertPreloadsAllAndFails(SequentiallyPreloadedStateMachine.class, new Preload() {
+            @Override
+            public void preload(List<Class<?>> classes) throws FSMException {
+                FSMPreloader.preloadInCallingThread(classes);
+            }
+        });
+    }
+
+    private interface Preload {
+        void preload(List<Class<?>> classes) throws FSMException;
+    }
+
+    private static void assertPreloadsAllAndFails(Class<?> correctClass, Preload preload) {
+        try {
+            preload.preload(Arrays.<Class<?>>asList(DuplicateStartStateMachine.class, correctClass,
+                    InheritedDuplicateStartStateMachine.class));
+            fail("Preloading of the incorrect FSM must fail");
+        } catch (FSMException e) {
+            assertTrue(e.getMessage().contains("@NewState"));
+            assertEquals(1, e.getSuppressed().length);
+        }
+        assertNotNull("Correct FSM must be preloaded despite the failures", Metadata.getIfCached(correctClass));
+    }
+}
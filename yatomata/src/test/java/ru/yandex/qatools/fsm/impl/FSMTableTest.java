@@ -0,0 +1,90 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.annotations.*;
+import ru.yandex.qatools.fsm.beans.*;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class FSMTableTest {
+
+    private static final int SIZE = 1000;
+
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class),
+            @Transit(from = Running.class, on = TestEvent.class),
+            @Transit(from = Running.class, on = ProcessFailed.class, to = Idle.class),
+            @Transit(from = Running.class, on = ProcessCompleted.class, to = Idle.class, stop = true)
+    })
+    public static class TableStateMachine {
+        int started;
+        int tests;
+
+        @OnTransit
+        public void onStart(Idle from, Running to, ProcessStarted event) {
+            ++started;
+        }
+
+        @OnTransit
+        public void onTest(Running state, TestEvent event) {
+            ++tests;
+        }
+
+        @OnTransit
+        public void onFail(Running from, Idle to, ProcessFailed event) {
+            throw new IllegalStateException("rolled back");
+        }
+
+        @OnException
+        public void onException(IllegalStateException e) {
+        }
+    }
+
+    @Test
+    public void testFireAndCount() {
+        final FSMTable<TableStateMachine> table = new FSMTable<>(TableStateMachine.class, SIZE);
+        assertEquals(SIZE, table.countInState(Idle.class));
+        for (int key = 0; key < SIZE; key += 2) {
+            assertThat(table.fire(key, new ProcessStarted()), instanceOf(Running.class));
+            table.fire(key, new TestPassed());
+        }
+        for (int key = 0; key < SIZE; key += 4) {
+            assertThat(table.fire(key, new ProcessCompleted()), instanceOf(Idle.class));
+        }
+
+        assertEquals(SIZE / 2, table.getFSM().started);
+        assertEquals(SIZE / 2, table.getFSM().tests);
+        assertEquals(SIZE / 4, table.countInState(Running.class));
+        assertEquals(SIZE - SIZE / 4, table.countInState(Idle.class));
+        assertEquals(SIZE / 4, table.countCompleted());
+        assertTrue(table.isCompleted(0));
+        assertFalse(table.isCompleted(1));
+        assertFalse(table.isCompleted(2));
+        assertThat(table.getCurrentState(2), instanceOf(Running.class));
+        assertSame("State instances must be shared", table.getCurrentState(2), table.getCurrentState(6));
+    }
+
+    @Test
+    public void testRollbackAndIgnoredEvents() {
+        final FSMTable<TableStateMachine> table = new FSMTable<>(new TableStateMachine(), 10);
+        assertThat(table.fire(3, new TestPassed()), instanceOf(Idle.class));
+        table.fire(3, new ProcessStarted());
+        assertThat(table.fire(3, new ProcessFailed()), instanceOf(Running.class));
+        assertEquals(0, table.getFSM().tests);
+        assertEquals(1, table.countInState(Running.class));
+    }
+
+    @Test(expected = StateMachineException.class)
+    public void testCompletedInstanceRejectsEvents() {
+        final FSMTable<TableStateMachine> table = new FSMTable<>(TableStateMachine.class, 1);
+        table.fire(0, new ProcessStarted());
+        table.fire(0, new ProcessCompleted());
+        table.fire(0, new ProcessStarted());
+    }
+}
@@ -0,0 +1,89 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.FireResult;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.FSM;
+import ru.yandex.qatools.fsm.annotations.OnTransit;
+import ru.yandex.qatools.fsm.annotations.Transit;
+import ru.yandex.qatools.fsm.annotations.Transitions;
+import ru.yandex.qatools.fsm.beans.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class FireAllTest {
+
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class),
+            @Transit(from = Running.class, on = TestEvent.class),
+            @Transit(from = Running.class, on = ProcessCompleted.class, to = Idle.class, stop = true)
+    })
+    public static class CountingStateMachine {
+        int tests;
+        final List<Object> events = new ArrayList<>();
+
+        @OnTransit
+        public void onTest(Running state, TestEvent event) {
+            ++tests;
+        }
+
+        @OnTransit
+        public void onEvent(Object event) {
+            events.add(event);
+        }
+    }
+
+    @Test
+    public void testFireAllAppliesEventsInOrder() {
+        final Yatomata<CountingStateMachine> engine = new FSMBuilder<>(CountingStateMachine.class).build();
+        final ProcessStarted started = new ProcessStarted();
+        final List<Object> events = new ArrayList<>();
+        events.add(started);
+        for (int i = 0; i < 100; ++i) {
+            events.add(new TestPassed());
+        }
+        final FireResult result = engine.fireAll(events);
+
+        assertThat(result.getState(), instanceOf(Running.class));
+        assertThat(result.getState(), sameInstance(engine.getCurrentState()));
+        assertEquals(101, result.getApplied());
+        assertEquals(0, result.getIgnored());
+        assertEquals(100, engine.getFSM().tests);
+        assertThat(engine.getFSM().events.get(0), sameInstance((Object) started));
+    }
+
+    @Test
+    public void testFireAllCountsIgnoredEvents() {
+        final Yatomata<CountingStateMachine> engine = new FSMBuilder<>(CountingStateMachine.class).build();
+        final FireResult result = engine.fireAll(Arrays.asList(
+                new TestPassed(), null, new ProcessStarted(), new ProcessStarted(), new TestFailed()));
+
+        assertThat(result.getState(), instanceOf(Running.class));
+        assertEquals(2, result.getApplied());
+        assertEquals("Null events must be skipped", 2, result.getIgnored());
+        assertEquals(1, engine.getFSM().tests);
+    }
+
+    @Test
+    public void testFireAllStopsOnceCompleted() {
+        final Yatomata<CountingStateMachine> engine = new FSMBuilder<>(CountingStateMachine.class).build();
+        final FireResult result = engine.fireAll(Arrays.asList(
+                new ProcessStarted(), new TestPassed(), new ProcessCompleted(), new ProcessStarted(), new TestPassed()));
+
+        assertTrue(engine.isCompleted());
+        assertThat(result.getState(), instanceOf(Idle.class));
+        assertEquals(3, result.getApplied());
+        assertEquals(0, result.getIgnored());
+        assertEquals(1, engine.getFSM().tests);
+    }
+}
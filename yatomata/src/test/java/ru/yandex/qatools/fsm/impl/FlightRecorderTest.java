@@ -0,0 +1,95 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.*;
+import ru.yandex.qatools.fsm.beans.*;
+
+import java.util.List;
+
+import static org.junit.matchers.JUnitMatchers.containsString;
+import static org.junit.Assert.*;
+import static ru.yandex.qatools.fsm.impl.FlightRecorder.Outcome.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class FlightRecorderTest {
+
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class),
+            @Transit(from = Running.class, on = TestFailed.class),
+            @Transit(from = Running.class, on = TestBroken.class),
+            @Transit(from = Running.class, on = ProcessFailed.class, to = Idle.class),
+    })
+    public static class RecordedStateMachine {
+        @OnTransit
+        public void onTestFailed(Running state, TestFailed event) {
+            throw new IllegalStateException("preserved");
+        }
+
+        @OnTransit
+        public void onTestBroken(Running state, TestBroken event) {
+            throw new UnsupportedOperationException("not handled");
+        }
+
+        @OnTransit
+        public void onProcessFailed(Running from, Idle to, ProcessFailed event) {
+            throw new IllegalArgumentException("rolled back");
+        }
+
+        @OnException(preserve = true)
+        public void onPreserved(IllegalStateException e) {
+        }
+
+        @OnException
+        public void onRolledBack(IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testLastTransitionsAreRecorded() {
+        final Yatomata<RecordedStateMachine> engine =
+                new FSMBuilder<>(RecordedStateMachine.class).withFlightRecorder(3).build();
+        engine.fire(new TestPassed());
+        engine.fire(new ProcessStarted());
+        engine.fire(new TestPassed());
+        engine.fire(new TestFailed());
+        engine.fire(new ProcessFailed());
+
+        final FlightRecorder recorder = FlightRecorder.of(engine);
+        assertEquals(5, recorder.getRecordedCount());
+        final List<FlightRecorder.Entry> entries = recorder.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals(IGNORED, entries.get(0).getOutcome());
+        assertEquals(TestPassed.class, entries.get(0).getEventClass());
+        assertNull(entries.get(0).getToStateClass());
+        assertEquals(PRESERVED, entries.get(1).getOutcome());
+        assertEquals(ROLLED_BACK, entries.get(2).getOutcome());
+        assertEquals(Running.class, entries.get(2).getFromStateClass());
+        assertEquals(Idle.class, entries.get(2).getToStateClass());
+        assertTrue(entries.get(1).getNanoTime() <= entries.get(2).getNanoTime());
+    }
+
+    @Test
+    public void testRecordIsAttachedToException() {
+        final Yatomata<RecordedStateMachine> engine =
+                new FSMBuilder<>(RecordedStateMachine.class).withFlightRecorder(16).build();
+        engine.fire(new ProcessStarted());
+        try {
+            engine.fire(new TestBroken());
+            fail("Exception must be thrown");
+        } catch (StateMachineException e) {
+            assertEquals(1, e.getSuppressed().length);
+            assertThat(e.getSuppressed()[0].getMessage(), containsString("APPLIED: (Idle) -> (Running) on ProcessStarted"));
+            assertThat(e.getSuppressed()[0].getMessage(), containsString("FAILED: (Running) -> (-) on TestBroken"));
+        }
+    }
+
+    @Test
+    public void testRecorderIsNotAttachedByDefault() {
+        assertNull(FlightRecorder.of(new FSMBuilder<>(RecordedStateMachine.class).build()));
+    }
+}
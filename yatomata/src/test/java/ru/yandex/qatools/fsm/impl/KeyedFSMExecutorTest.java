@@ -0,0 +1,235 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.FSM;
+import ru.yandex.qatools.fsm.annotations.OnTransit;
+import ru.yandex.qatools.fsm.annotations.Transit;
+import ru.yandex.qatools.fsm.annotations.Transitions;
+import ru.yandex.qatools.fsm.beans.Idle;
+import ru.yandex.qatools.fsm.beans.ProcessCompleted;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class KeyedFSMExecutorTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int KEYS_PER_PRODUCER = 50;
+    private static final int STEPS = 100;
+
+    public static class Step {
+        final int number;
+
+        public Step(int number) {
+            this.number = number;
+        }
+    }
+
+    public static class Fail {
+    }
+
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(on = Step.class),
+            @Transit(on = Fail.class),
+            @Transit(on = ProcessCompleted.class, stop = true)
+    })
+    public static class RecordingStateMachine {
+        final List<Integer> steps = new ArrayList<>();
+
+        @OnTransit
+        public void onStep(Step event) {
+            steps.add(event.number);
+        }
+
+        @OnTransit
+        public void onFail(Fail event) {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    private static class CollectingCallback implements KeyedFSMExecutor.Callback<String, RecordingStateMachine> {
+        final ConcurrentMap<String, RecordingStateMachine> completed = new ConcurrentHashMap<>();
+        final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public void onCompleted(String key, Yatomata<RecordingStateMachine> engine) {
+            assertNull("Each key must be completed once", completed.put(key, engine.getFSM()));
+        }
+
+        @Override
+        public void onFailed(String key, Object event, Throwable e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testEventsOfEachKeyAreProcessedInOrder() throws Exception {
+        final CollectingCallback callback = new CollectingCallback();
+        final KeyedFSMExecutor<String, RecordingStateMachine> executor = new KeyedFSMExecutor<>(
+                new FSMBuilder<>(RecordingStateMachine.class), callback, 3, 16);
+        final ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+        final List<Future<?>> results = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; ++p) {
+            final int producer = p;
+            results.add(producers.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int step = 0; step < STEPS; ++step) {
+                        for (int key = 0; key < KEYS_PER_PRODUCER; ++key) {
+                            executor.submit(producer + "-" + key, new Step(step));
+                        }
+                    }
+                    for (int key = 0; key < KEYS_PER_PRODUCER; ++key) {
+                        executor.submit(producer + "-" + key, new ProcessCompleted());
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        producers.shutdown();
+        executor.shutdown();
+        assertTrue("Executor must terminate", executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(PRODUCERS * KEYS_PER_PRODUCER, callback.completed.size());
+        for (RecordingStateMachine fsm : callback.completed.values()) {
+            assertEquals(STEPS, fsm.steps.size());
+            for (int i = 0; i < STEPS; ++i) {
+                assertEquals("Events must be processed in the order of submission", i, (int) fsm.steps.get(i));
+            }
+        }
+        assertEquals(0, callback.failures.get());
+    }
+
+    @Test
+    public void testFailureDoesNotBreakTheKey() throws Exception {
+        final CollectingCallback callback = new CollectingCallback();
+        final KeyedFSMExecutor<String, RecordingStateMachine> executor = new KeyedFSMExecutor<>(
+                new FSMBuilder<>(RecordingStateMachine.class), callback, 2, 4);
+        executor.submit("key", new Step(0));
+        executor.submit("key", new Fail());
+        executor.submit("key", new Step(1));
+        executor.submit("key", new ProcessCompleted());
+        executor.submit("key", new Step(2));
+        executor.shutdown();
+        assertTrue("Executor must terminate", executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1, callback.failures.get());
+        assertEquals(1, callback.completed.size());
+        assertEquals(2, callback.completed.get("key").steps.size());
+    }
+
+    @Test
+    public void testErrorDoesNotKillTheShard() throws Exception {
+        final CollectingCallback callback = new CollectingCallback();
+        final FSMBuilder<RecordingStateMachine> fsmBuilder = new FSMBuilder<>(RecordingStateMachine.class);
+        final AtomicInteger builds = new AtomicInteger();
+        final KeyedFSMExecutor<String, RecordingStateMachine> executor = new KeyedFSMExecutor<>(
+                new Yatomata.Builder<RecordingStateMachine>() {
+                    @Override
+                    public Yatomata<RecordingStateMachine> build(Object state) {
+                        return build();
+                    }
+
+                    @Override
+                    public Yatomata<RecordingStateMachine> build() {
+                        if (builds.getAndIncrement() == 0) {
+                            throw new AssertionError("failed");
+                        }
+                        return fsmBuilder.build();
+                    }
+                }, callback, 1, 16);
+        executor.submit("key", new Step(0));
+        for (int step = 1; step <= 3; ++step) {
+            executor.submit("key", new Step(step));
+        }
+        executor.submit("key", new ProcessCompleted());
+        executor.shutdown();
+        assertTrue("Executor must terminate", executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1, callback.failures.get());
+        assertEquals(3, callback.completed.get("key").steps.size());
+    }
+
+    @Test
+    public void testRemoveEvictsTheKey() throws Exception {
+        final CollectingCallback callback = new CollectingCallback();
+        final KeyedFSMExecutor<String, RecordingStateMachine> executor = new KeyedFSMExecutor<>(
+                new FSMBuilder<>(RecordingStateMachine.class), callback, 1, 4);
+        executor.submit("key", new Step(0));
+        executor.remove("key");
+        executor.submit("key", new Step(1));
+        executor.submit("key", new ProcessCompleted());
+        executor.shutdown();
+        assertTrue("Executor must terminate", executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(1), callback.completed.get("key").steps);
+    }
+
+    @Test
+    public void testFailingCallbackKeepsTheOriginalFailure() throws Exception {
+        final Thread.UncaughtExceptionHandler defaultHandler = Thread.getDefaultUncaughtExceptionHandler();
+        final BlockingQueue<Throwable> uncaught = new LinkedBlockingQueue<>();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                uncaught.add(e);
+            }
+        });
+        try {
+            final KeyedFSMExecutor<String, RecordingStateMachine> executor = new KeyedFSMExecutor<>(
+                    new FSMBuilder<>(RecordingStateMachine.class), new CollectingCallback() {
+                @Override
+                public void onFailed(String key, Object event, Throwable e) {
+                    throw new UnsupportedOperationException("callback failed");
+                }
+            }, 1, 4);
+            executor.submit("key", new Fail());
+            executor.shutdown();
+            assertTrue("Executor must terminate", executor.awaitTermination(10, TimeUnit.SECONDS));
+
+            final Throwable e = uncaught.poll(10, TimeUnit.SECONDS);
+            assertNotNull("Handler must receive the failure", e);
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof IllegalStateException)) {
+                cause = cause.getCause();
+            }
+            assertNotNull("Handler must receive the failure of the hook", cause);
+            assertEquals(1, e.getSuppressed().length);
+            assertTrue(e.getSuppressed()[0] instanceof UnsupportedOperationException);
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(defaultHandler);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullKeyIsRejected() throws Exception {
+        final KeyedFSMExecutor<String, RecordingStateMachine> executor = new KeyedFSMExecutor<>(
+                new FSMBuilder<>(RecordingStateMachine.class), null, 1, 1);
+        try {
+            executor.submit(null, new Step(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testSubmitAfterShutdownIsRejected() throws Exception {
+        final KeyedFSMExecutor<String, RecordingStateMachine> executor = new KeyedFSMExecutor<>(
+                new FSMBuilder<>(RecordingStateMachine.class), null, 1, 1);
+        executor.shutdown();
+        executor.submit("key", new Step(0));
+    }
+}
@@ -0,0 +1,151 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.After;
+import org.junit.Test;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.FSM;
+import ru.yandex.qatools.fsm.annotations.OnTransit;
+import ru.yandex.qatools.fsm.annotations.Transit;
+import ru.yandex.qatools.fsm.annotations.Transitions;
+import ru.yandex.qatools.fsm.beans.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class MetadataCacheTest {
+
+    public static class PluginState {
+    }
+
+    public static class PluginEvent {
+    }
+
+    @FSM(start = PluginState.class)
+    @Transitions(@Transit(on = PluginEvent.class))
+    public static class PluginStateMachine {
+        public int events;
+
+        @OnTransit
+        public void onEvent(PluginState state, PluginEvent event) {
+            ++events;
+        }
+    }
+
+    @FSM(start = Idle.class)
+    @Transitions(@Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class))
+    public static class FirstStateMachine {
+    }
+
+    @FSM(start = Idle.class)
+    @Transitions(@Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class))
+    public static class SecondStateMachine {
+    }
+
+    @FSM(start = Idle.class)
+    @Transitions(@Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class))
+    public static class ThirdStateMachine {
+    }
+
+    /**
+     * Loads the plugin classes itself, the others are loaded by the parent
+     */
+    private static class PluginClassLoader extends ClassLoader {
+        private PluginClassLoader() {
+            super(MetadataCacheTest.class.getClassLoader());
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(MetadataCacheTest.class.getName() + "$Plugin")) {
+                return super.loadClass(name, resolve);
+            }
+            Class<?> clazz = findLoadedClass(name);
+            if (clazz == null) {
+                final byte[] bytes = readClass(name);
+                clazz = defineClass(name, bytes, 0, bytes.length);
+            }
+            return clazz;
+        }
+
+        private byte[] readClass(String name) throws ClassNotFoundException {
+            try (InputStream input = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                final ByteArrayOutputStream output = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[4096];
+                for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                    output.write(buffer, 0, read);
+                }
+                return output.toByteArray();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        MetadataCache.setMaxSize(0);
+    }
+
+    @Test
+    public void testDiscardedClassLoaderIsCollected() throws Exception {
+        final WeakReference<ClassLoader> loader = firePluginEvent();
+        for (int i = 0; i < 50 && loader.get() != null; ++i) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull("Class loader of the FSM must be collected", loader.get());
+    }
+
+    @Test
+    public void testMaxSizeEvictsOldestMetadata() throws Exception {
+        MetadataCache.clear();
+        MetadataCache.setMaxSize(2);
+        final Yatomata<FirstStateMachine> first = new FSMBuilder<>(FirstStateMachine.class).build();
+        final Metadata.ClassInfo firstInfo = Metadata.get(FirstStateMachine.class);
+        Metadata.get(SecondStateMachine.class);
+        Metadata.get(ThirdStateMachine.class);
+
+        assertEquals(2, MetadataCache.size());
+        final List<Class> cached = new ArrayList<>();
+        for (Metadata.ClassInfo info : Metadata.getCached()) {
+            cached.add(info.getFsmClass());
+        }
+        assertFalse(cached.contains(FirstStateMachine.class));
+        assertThat(first.fire(new ProcessStarted()), instanceOf(Running.class));
+        assertNotSame("Evicted metadata must be built again", firstInfo, Metadata.get(FirstStateMachine.class));
+    }
+
+    @Test
+    public void testBoundedClassTuplesCache() {
+        final ClassTupleCache<String> cache = new ClassTupleCache<>(2);
+        cache.putIfAbsent(Idle.class, ProcessStarted.class, "first");
+        cache.putIfAbsent(Running.class, ProcessStarted.class, "second");
+        assertEquals("third", cache.putIfAbsent(Running.class, ProcessCompleted.class, "third"));
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(Idle.class, ProcessStarted.class));
+        assertEquals("third", cache.get(Running.class, ProcessCompleted.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WeakReference<ClassLoader> firePluginEvent() throws Exception {
+        final ClassLoader loader = new PluginClassLoader();
+        final Class<Object> fsmClass = (Class<Object>) loader.loadClass(PluginStateMachine.class.getName());
+        assertNotSame(PluginStateMachine.class, fsmClass);
+        final Yatomata<Object> engine = new FSMBuilder<>(fsmClass).build();
+        engine.fire(loader.loadClass(PluginEvent.class.getName()).newInstance());
+        assertEquals(1, fsmClass.getDeclaredField("events").getInt(engine.getFSM()));
+        return new WeakReference<>(loader);
+    }
+}
@@ -8,6 +8,7 @@ import ru.yandex.qatools.fsm.beans.*;
 import ru.yandex.qatools.fsm.impl.YatomataImpl;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
@@ -44,6 +45,25 @@ public class OnExceptionStateMachineTest {
         }
     }
 
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class),
+    })
+    public static class RethrowingStateMachine {
+        private final IllegalArgumentException thrown = new IllegalArgumentException("Failure", new IllegalStateException());
+        private Throwable handled;
+
+        @OnTransit
+        public void onStart(Idle from, Running to, ProcessStarted event) {
+            throw thrown;
+        }
+
+        @OnException(preserve = true)
+        public void onException(Throwable e, ExecuteState state) {
+            handled = e;
+        }
+    }
+
     private YatomataImpl engine;
     OnExceptionStateMachine fsm = mock(OnExceptionStateMachine.class);
 
@@ -64,4 +84,12 @@ public class OnExceptionStateMachineTest {
         verify(fsm).onCancel(any(Running.class), any(Idle.class), any(ProcessCompleted.class));
         verify(fsm).onRuntimeException(any(ArithmeticException.class), any(Running.class));
     }
+
+    @Test
+    public void testHookExceptionIsPassedUnchanged() throws FSMException {
+        RethrowingStateMachine fsm = new RethrowingStateMachine();
+        YatomataImpl<RethrowingStateMachine> engine = new YatomataImpl<>(RethrowingStateMachine.class, fsm);
+        assertThat("State must be changed to Running", engine.fire(new ProcessStarted()), instanceOf(Running.class));
+        assertSame("Handler must receive the thrown exception", fsm.thrown, fsm.handled);
+    }
 }
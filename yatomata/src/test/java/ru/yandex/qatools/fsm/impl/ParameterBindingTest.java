@@ -0,0 +1,62 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.annotations.Event;
+import ru.yandex.qatools.fsm.annotations.FromState;
+import ru.yandex.qatools.fsm.annotations.ToState;
+import ru.yandex.qatools.fsm.beans.*;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class ParameterBindingTest {
+
+    public static class Hooks {
+        public void annotated(@Event TestEvent event, Throwable e, @ToState Running to, @FromState Idle from) {
+        }
+
+        public void plain(Idle from, TestEvent event) {
+        }
+
+        public void invalid(@FromState @ToState Idle state) {
+        }
+    }
+
+    private final Object[] slots = new ParametersProvider()
+            .set(new IllegalStateException(), new Idle(), new Running(), new TestPassed()).getSlots();
+
+    @Test
+    public void testAnnotatedParametersAreBound() throws Exception {
+        final ParameterBinding binding = ParameterBinding.parse(method("annotated"));
+        assertArrayEquals(new int[]{ParametersProvider.EVENT, ParametersProvider.EXCEPTION,
+                ParametersProvider.TO_STATE, ParametersProvider.FROM_STATE}, binding.bind(slots));
+        assertNull("Binding must check the argument types", binding.bind(new ParametersProvider()
+                .set(null, new Idle(), new Idle(), new TestPassed()).getSlots()));
+    }
+
+    @Test
+    public void testNotAnnotatedParametersAreNotBound() throws Exception {
+        final ParameterBinding binding = ParameterBinding.parse(method("plain"));
+        assertNull(binding.bind(slots));
+        assertArrayEquals(new Class[]{Idle.class, TestEvent.class}, binding.getParameterTypes());
+    }
+
+    @Test(expected = FSMException.class)
+    public void testInvalidAnnotationsAreReportedOnBind() throws Exception {
+        ParameterBinding.parse(method("invalid")).bind(slots);
+    }
+
+    private static Method method(String name) {
+        for (Method method : Hooks.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+}
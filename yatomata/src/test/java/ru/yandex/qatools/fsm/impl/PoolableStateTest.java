@@ -0,0 +1,204 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.PoolableState;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.*;
+import ru.yandex.qatools.fsm.beans.ProcessCompleted;
+import ru.yandex.qatools.fsm.beans.ProcessFailed;
+import ru.yandex.qatools.fsm.beans.ProcessStarted;
+import ru.yandex.qatools.fsm.beans.TestPassed;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class PoolableStateTest {
+
+    public static class Counting implements PoolableState {
+        int count;
+        int resets;
+
+        @Override
+        public void reset() {
+            count = 0;
+            ++resets;
+        }
+    }
+
+    public static class Waiting extends Counting {
+    }
+
+    public static class Processing extends Counting {
+    }
+
+    @FSM(start = Waiting.class)
+    @Transitions({
+            @Transit(from = Waiting.class, on = ProcessStarted.class, to = Processing.class),
+            @Transit(from = Processing.class, on = ProcessCompleted.class, to = Waiting.class),
+            @Transit(from = Processing.class, on = ProcessFailed.class, to = Waiting.class),
+            @Transit(from = Processing.class, on = TestPassed.class),
+    })
+    public static class PooledStateMachine {
+        @OnTransit
+        public void onTest(Processing state, TestPassed event) {
+            ++state.count;
+        }
+
+        @OnTransit
+        public void onFailed(Processing from, Waiting to, ProcessFailed event) {
+            to.count = 100;
+            throw new IllegalStateException("failed");
+        }
+
+        @OnException(preserve = false)
+        public void rollback(IllegalStateException e) {
+        }
+    }
+
+    public static class Started {
+        final int id;
+
+        public Started(int id) {
+            this.id = id;
+        }
+    }
+
+    public static class Identified extends Counting {
+        int id;
+    }
+
+    @FSM(start = Waiting.class)
+    @Transitions({
+            @Transit(from = Waiting.class, on = Started.class, to = Identified.class),
+            @Transit(from = Identified.class, on = ProcessCompleted.class, to = Waiting.class)
+    })
+    public static class NewStateStateMachine {
+        @NewState
+        public Object newState(Class<?> stateClass, Started event) throws Exception {
+            final Object state = stateClass.newInstance();
+            if (state instanceof Identified) {
+                ((Identified) state).id = event.id;
+            }
+            return state;
+        }
+    }
+
+    public static class DefinitionHandler {
+    }
+
+    @Before
+    public void setUp() {
+        Metadata.evict(PooledStateMachine.class);
+    }
+
+    private static Metadata.ClassInfo metadata() throws FSMException {
+        return Metadata.get(PooledStateMachine.class);
+    }
+
+    @Test
+    public void testLeftStatesAreRecycled() throws FSMException {
+        final Yatomata<PooledStateMachine> engine = new FSMBuilder<>(PooledStateMachine.class).build();
+        final Object waiting = engine.getCurrentState();
+        final Processing processing = (Processing) engine.fire(new ProcessStarted());
+        engine.fire(new TestPassed());
+        engine.fire(new TestPassed());
+        assertEquals(2, processing.count);
+        assertEquals(1, metadata().getPooledStatesCount(Waiting.class));
+
+        assertSame(waiting, engine.fire(new ProcessCompleted()));
+        assertEquals(1, metadata().getPooledStatesCount(Processing.class));
+        assertEquals(0, processing.count);
+        assertEquals(1, processing.resets);
+
+        assertSame(processing, engine.fire(new ProcessStarted()));
+        assertEquals(0, metadata().getPooledStatesCount(Processing.class));
+    }
+
+    @Test
+    public void testRolledBackStateIsRecycledButCurrentIsNot() throws FSMException {
+        final Yatomata<PooledStateMachine> engine = new FSMBuilder<>(PooledStateMachine.class).build();
+        final Object processing = engine.fire(new ProcessStarted());
+        assertEquals(1, metadata().getPooledStatesCount(Waiting.class));
+
+        assertSame(processing, engine.fire(new ProcessFailed()));
+        assertEquals(1, metadata().getPooledStatesCount(Waiting.class));
+        assertEquals(0, metadata().getPooledStatesCount(Processing.class));
+
+        final Object waiting = engine.fire(new ProcessCompleted());
+        assertThat(waiting, instanceOf(Waiting.class));
+        assertEquals("Recycled state must be reset", 0, ((Waiting) waiting).count);
+    }
+
+    @Test
+    public void testStateReturnedByFireIsValidUntilNextFire() throws FSMException {
+        final FSMBuilder<PooledStateMachine> builder = new FSMBuilder<>(PooledStateMachine.class);
+        final Yatomata<PooledStateMachine> engine = builder.build();
+        final Processing kept = (Processing) engine.fire(new ProcessStarted());
+        engine.fire(new TestPassed());
+        assertSame(kept, engine.getCurrentState());
+        assertEquals(1, kept.count);
+
+        // the next fire leaving the state recycles it, so the reference kept by the caller is reset and reused
+        engine.fire(new ProcessCompleted());
+        assertEquals(0, kept.count);
+        assertEquals(1, kept.resets);
+        assertSame(kept, builder.build().fire(new ProcessStarted()));
+    }
+
+    @Test
+    public void testStatesOfNewStateMethodsAreNotPooled() throws FSMException {
+        final Yatomata<NewStateStateMachine> engine = new FSMBuilder<>(NewStateStateMachine.class).build();
+        for (int id = 1; id <= 3; ++id) {
+            final Identified identified = (Identified) engine.fire(new Started(id));
+            assertEquals("State must be created by the @NewState method", id, identified.id);
+            assertEquals(0, identified.resets);
+            engine.fire(new ProcessCompleted());
+        }
+        assertEquals(0, Metadata.get(NewStateStateMachine.class).getPooledStatesCount(Identified.class));
+        assertEquals(0, Metadata.get(NewStateStateMachine.class).getPooledStatesCount(Waiting.class));
+    }
+
+    @Test
+    public void testStatesOfDefinitionFactoryAreNotPooled() {
+        final FSMDefinition<DefinitionHandler> definition = FSMDefinition.builder(DefinitionHandler.class)
+                .start(Waiting.class)
+                .transit(Waiting.class, Started.class, Identified.class)
+                .transit(Identified.class, ProcessCompleted.class, Waiting.class)
+                .newState(Identified.class, new FSMDefinition.StateFactory<DefinitionHandler, Identified>() {
+                    @Override
+                    public Identified create(DefinitionHandler fsm, Object event) {
+                        final Identified state = new Identified();
+                        state.id = ((Started) event).id;
+                        return state;
+                    }
+                })
+                .build();
+        final Yatomata<DefinitionHandler> engine = new FSMBuilder<>(definition).build();
+        final Object waiting = engine.getCurrentState();
+        for (int id = 1; id <= 3; ++id) {
+            assertEquals(id, ((Identified) engine.fire(new Started(id))).id);
+            assertSame("States without the factory are still pooled", waiting, engine.fire(new ProcessCompleted()));
+        }
+        assertEquals(0, definition.getClassInfo().getPooledStatesCount(Identified.class));
+    }
+
+    @Test
+    public void testPooledStatesAreNotSharedByEngines() {
+        final FSMBuilder<PooledStateMachine> builder = new FSMBuilder<>(PooledStateMachine.class);
+        final Yatomata<PooledStateMachine> first = builder.build();
+        final Yatomata<PooledStateMachine> second = builder.build();
+        for (int i = 0; i < 10; ++i) {
+            first.fire(new ProcessStarted());
+            second.fire(new ProcessStarted());
+            assertNotSame(first.getCurrentState(), second.getCurrentState());
+            first.fire(new ProcessCompleted());
+            second.fire(new ProcessCompleted());
+            assertNotSame(first.getCurrentState(), second.getCurrentState());
+        }
+    }
+}
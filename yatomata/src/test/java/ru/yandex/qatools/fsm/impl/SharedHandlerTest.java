@@ -0,0 +1,101 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.*;
+import ru.yandex.qatools.fsm.beans.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class SharedHandlerTest {
+
+    private static final int WARMUP_BUILDS = 20000;
+    private static final int MEASURED_BUILDS = 10000;
+    // the engine object itself, the measurement allocates a bit more once
+    private static final long ENGINE_BYTES_BUDGET = 64;
+    private static final long MEASUREMENT_BYTES_BUDGET = 4096;
+
+    @FSM(start = Idle.class, sharedStates = true, sharedHandler = true)
+    @Transitions({
+            @Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class),
+            @Transit(from = Running.class, on = TestEvent.class, to = CompletedCounterState.class),
+    })
+    public static class StatelessStateMachine {
+        static int created;
+
+        public StatelessStateMachine() {
+            ++created;
+        }
+
+        @OnTransit
+        public void onTest(Running from, CompletedCounterState to, TestPassed event) {
+            to.setCompletionsCount(to.getCompletionsCount() + 1);
+        }
+    }
+
+    @FSM(start = Idle.class, sharedHandler = true)
+    @Transitions(@Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class))
+    public static class StatefulStateMachine {
+        int started;
+    }
+
+    @Test
+    public void testHandlerIsSharedByEngines() {
+        final FSMBuilder<StatelessStateMachine> builder = new FSMBuilder<>(StatelessStateMachine.class);
+        final int createdBefore = StatelessStateMachine.created;
+        final Yatomata<StatelessStateMachine> first = builder.build();
+        final Yatomata<StatelessStateMachine> second = builder.build();
+        assertSame(first.getFSM(), second.getFSM());
+        assertEquals(createdBefore + 1, StatelessStateMachine.created);
+
+        first.fire(new ProcessStarted());
+        assertThat(first.fire(new TestPassed()), instanceOf(CompletedCounterState.class));
+        assertEquals(1, ((CompletedCounterState) first.getCurrentState()).getCompletionsCount());
+        assertThat(second.getCurrentState(), instanceOf(Idle.class));
+    }
+
+    @Test
+    public void testSharedHandlerWithFieldsIsRejected() {
+        try {
+            new FSMBuilder<>(StatefulStateMachine.class).build();
+            fail("Shared handler with instance fields must be rejected");
+        } catch (RuntimeException e) {
+            assertThat(e.getCause(), instanceOf(FSMException.class));
+        }
+    }
+
+    @Test
+    public void testWarmBuildAllocatesOnlyEngine() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        final FSMBuilder<StatelessStateMachine> builder = new FSMBuilder<>(StatelessStateMachine.class);
+        Yatomata<StatelessStateMachine> engine = null;
+        for (int i = 0; i < WARMUP_BUILDS; ++i) {
+            engine = builder.build();
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_BUILDS; ++i) {
+            engine = builder.build();
+        }
+        final long allocated = allocations.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertThat(engine.getCurrentState(), instanceOf(Idle.class));
+        assertTrue(String.format("Build must allocate only the engine: %d bytes allocated by %d builds",
+                allocated, MEASURED_BUILDS),
+                allocated <= MEASURED_BUILDS * ENGINE_BYTES_BUDGET + MEASUREMENT_BYTES_BUDGET);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.*;
+import ru.yandex.qatools.fsm.beans.*;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class SharedStateTest {
+
+    @SharedState
+    public static class Marked {
+        int value;
+    }
+
+    @FSM(start = Idle.class, sharedStates = true)
+    @Transitions({
+            @Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class),
+            @Transit(from = Running.class, on = TestEvent.class, to = CompletedCounterState.class),
+            @Transit(from = CompletedCounterState.class, on = ProcessCompleted.class, to = Idle.class),
+    })
+    public static class SharedStatesStateMachine {
+    }
+
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class),
+            @Transit(from = Running.class, on = ProcessCompleted.class, to = Marked.class),
+    })
+    public static class MarkedStateMachine {
+        @NewState
+        public Object initState(Class<?> stateClass) throws Exception {
+            return stateClass.newInstance();
+        }
+    }
+
+    @Test
+    public void testStatesWithoutFieldsAreShared() {
+        final Yatomata<SharedStatesStateMachine> first = new FSMBuilder<>(SharedStatesStateMachine.class).build();
+        final Yatomata<SharedStatesStateMachine> second = new FSMBuilder<>(SharedStatesStateMachine.class).build();
+        assertSame(first.getCurrentState(), second.getCurrentState());
+
+        final Object running = first.fire(new ProcessStarted());
+        assertThat(running, instanceOf(Running.class));
+        assertSame(running, second.fire(new ProcessStarted()));
+
+        final Object counter = first.fire(new TestPassed());
+        assertThat(counter, instanceOf(CompletedCounterState.class));
+        assertNotSame("States with fields must not be shared", counter, second.fire(new TestPassed()));
+    }
+
+    @Test
+    public void testStatesAreNotSharedByDefault() {
+        final Yatomata<MarkedStateMachine> first = new FSMBuilder<>(MarkedStateMachine.class).build();
+        final Yatomata<MarkedStateMachine> second = new FSMBuilder<>(MarkedStateMachine.class).build();
+        assertNotSame(first.getCurrentState(), second.getCurrentState());
+        assertNotSame(first.fire(new ProcessStarted()), second.fire(new ProcessStarted()));
+    }
+
+    @Test
+    public void testMarkedStateIsShared() {
+        final Yatomata<MarkedStateMachine> first = new FSMBuilder<>(MarkedStateMachine.class).build();
+        final Yatomata<MarkedStateMachine> second = new FSMBuilder<>(MarkedStateMachine.class).build();
+        first.fire(new ProcessStarted());
+        second.fire(new ProcessStarted());
+        final Object marked = first.fire(new ProcessCompleted());
+        assertThat(marked, instanceOf(Marked.class));
+        assertSame(marked, second.fire(new ProcessCompleted()));
+    }
+}
@@ -0,0 +1,206 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.FSMException;
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.TransitionListener;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.*;
+import ru.yandex.qatools.fsm.beans.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class SnapshotCodecTest {
+
+    public static class UnknownState extends Idle {
+    }
+
+    public static class NotAState {
+        static {
+            notAStateInitialized = true;
+        }
+    }
+
+    static boolean notAStateInitialized;
+
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(from = Idle.class, on = ProcessStarted.class, to = CompletedCounterState.class),
+            @Transit(from = CompletedCounterState.class, on = TestEvent.class),
+            @Transit(from = CompletedCounterState.class, on = ProcessCompleted.class, to = Idle.class, stop = true)
+    })
+    public static class CountingStateMachine {
+        static int startStates;
+
+        @NewState
+        public Object initStartState(Class<?> stateClass) throws Exception {
+            ++startStates;
+            return stateClass.newInstance();
+        }
+
+        @OnTransit
+        public void onTest(CompletedCounterState state, TestEvent event) {
+            state.setCompletionsCount(state.getCompletionsCount() + 1);
+        }
+    }
+
+    private static final SnapshotCodec.StateCodec COUNTER_CODEC = new SnapshotCodec.StateCodec() {
+        @Override
+        public void encode(Object state, ByteBuffer buffer) {
+            if (state instanceof CompletedCounterState) {
+                buffer.putLong(((CompletedCounterState) state).getCompletionsCount());
+            }
+        }
+
+        @Override
+        public Object decode(Class<?> stateClass, ByteBuffer buffer) {
+            final Object state = SnapshotCodec.STATELESS.decode(stateClass, buffer);
+            if (state instanceof CompletedCounterState) {
+                ((CompletedCounterState) state).setCompletionsCount(buffer.getLong());
+            }
+            return state;
+        }
+    };
+
+    private final SnapshotCodec<CountingStateMachine> codec =
+            new SnapshotCodec<>(CountingStateMachine.class, COUNTER_CODEC);
+
+    @Test
+    public void testSnapshotAndRestore() {
+        final Yatomata<CountingStateMachine> engine = new FSMBuilder<>(CountingStateMachine.class).build();
+        engine.fire(new ProcessStarted());
+        engine.fire(new TestPassed());
+        engine.fire(new TestFailed());
+        final ByteBuffer buffer = ByteBuffer.allocate(256);
+        codec.snapshot(engine, buffer);
+        buffer.flip();
+
+        final int startStates = CountingStateMachine.startStates;
+        final Yatomata<CountingStateMachine> restored = codec.restore(buffer);
+        assertEquals("Restore must not instantiate the start state", startStates, CountingStateMachine.startStates);
+        assertFalse(buffer.hasRemaining());
+        assertFalse(restored.isCompleted());
+        assertThat(restored.getCurrentState(), instanceOf(CompletedCounterState.class));
+        assertEquals(2, ((CompletedCounterState) restored.getCurrentState()).getCompletionsCount());
+
+        restored.fire(new TestPassed());
+        assertEquals(3, ((CompletedCounterState) restored.getCurrentState()).getCompletionsCount());
+    }
+
+    @Test
+    public void testCompletedAndUndeclaredStates() {
+        final Yatomata<CountingStateMachine> completed = new FSMBuilder<>(CountingStateMachine.class).build();
+        completed.fire(new ProcessStarted());
+        completed.fire(new ProcessCompleted());
+        final List<Yatomata<CountingStateMachine>> engines = new ArrayList<>();
+        engines.add(completed);
+        engines.add(new FSMBuilder<>(CountingStateMachine.class).build(new UnknownState()));
+        final ByteBuffer buffer = ByteBuffer.allocate(256);
+        codec.snapshotAll(engines, buffer);
+        buffer.flip();
+
+        final List<Yatomata<CountingStateMachine>> restored = codec.restoreAll(buffer);
+        assertEquals(2, restored.size());
+        assertTrue(restored.get(0).isCompleted());
+        assertThat(restored.get(0).getCurrentState(), instanceOf(Idle.class));
+        assertFalse(restored.get(1).isCompleted());
+        assertThat(restored.get(1).getCurrentState(), instanceOf(UnknownState.class));
+    }
+
+    @Test
+    public void testBulkSnapshotIsCompact() {
+        final List<Yatomata<CountingStateMachine>> engines = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            final Yatomata<CountingStateMachine> engine = new FSMBuilder<>(CountingStateMachine.class).build();
+            engine.fire(new ProcessStarted());
+            for (int j = 0; j < i % 10; ++j) {
+                engine.fire(new TestPassed());
+            }
+            engines.add(engine);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+        codec.snapshotAll(engines, buffer);
+        assertTrue("Each snapshot must take 11 bytes", buffer.position() < 12 * 1000);
+        buffer.flip();
+
+        final List<Yatomata<CountingStateMachine>> restored = codec.restoreAll(buffer);
+        assertEquals(engines.size(), restored.size());
+        for (int i = 0; i < restored.size(); ++i) {
+            assertEquals(i % 10, ((CompletedCounterState) restored.get(i).getCurrentState()).getCompletionsCount());
+        }
+    }
+
+    @Test(expected = StateMachineException.class)
+    public void testSnapshotOfAnotherFSMIsRejected() {
+        final ByteBuffer buffer = ByteBuffer.allocate(256);
+        new SnapshotCodec<>(FireAllTest.CountingStateMachine.class, SnapshotCodec.STATELESS)
+                .snapshot(new FSMBuilder<>(FireAllTest.CountingStateMachine.class).build(), buffer);
+        buffer.flip();
+        codec.restore(buffer);
+    }
+
+    @Test
+    public void testUndeclaredStateClassIsRejected() {
+        final ByteBuffer buffer = ByteBuffer.allocate(256);
+        codec.snapshot(new FSMBuilder<>(CountingStateMachine.class).build(new UnknownState()), buffer);
+        final int namePosition = buffer.position() - UnknownState.class.getName().length();
+        // the snapshot naming the class which is not the state of the FSM
+        buffer.position(namePosition - 2);
+        buffer.putShort((short) NotAState.class.getName().length());
+        buffer.put(NotAState.class.getName().getBytes());
+        buffer.flip();
+        try {
+            codec.restore(buffer);
+            fail("Snapshot with the class which is not the state must be rejected");
+        } catch (StateMachineException e) {
+            assertTrue(e.getMessage().contains("is not the state"));
+        }
+        assertFalse("Class named by the snapshot must not be initialized", notAStateInitialized);
+    }
+
+    @Test
+    public void testRestoreKeepsBuilderConfigurationAndSharedInstances() {
+        final TransitionListener listener = mock(TransitionListener.class);
+        final FSMBuilder<SharedHandlerTest.StatelessStateMachine> builder =
+                new FSMBuilder<>(SharedHandlerTest.StatelessStateMachine.class)
+                        .withListener(listener).withFlightRecorder(8);
+        final Yatomata<SharedHandlerTest.StatelessStateMachine> engine = builder.build();
+        engine.fire(new ProcessStarted());
+        final ByteBuffer buffer = ByteBuffer.allocate(256);
+        final SnapshotCodec<SharedHandlerTest.StatelessStateMachine> sharedCodec =
+                new SnapshotCodec<>(builder, SnapshotCodec.STATELESS);
+        sharedCodec.snapshot(engine, buffer);
+        buffer.flip();
+
+        final Yatomata<SharedHandlerTest.StatelessStateMachine> restored = sharedCodec.restore(buffer);
+        assertSame("Shared state must be restored as the shared instance",
+                engine.getCurrentState(), restored.getCurrentState());
+        assertSame("Shared handler must be kept", engine.getFSM(), restored.getFSM());
+        assertNotNull(((YatomataImpl) restored).getFlightRecorder());
+        restored.fire(new TestPassed());
+        verify(listener).onTransitionResolved(same(restored.getFSM()), isA(Running.class),
+                isA(CompletedCounterState.class), isA(TestPassed.class));
+    }
+
+    @Test
+    public void testBuildWithStateDoesNotInstantiateStartState() throws FSMException {
+        final int startStates = CountingStateMachine.startStates;
+        final Running state = new Running();
+        final Yatomata<CountingStateMachine> engine =
+                new YatomataImpl<>(CountingStateMachine.class, new CountingStateMachine(), state);
+        assertSame(state, engine.getCurrentState());
+        assertEquals(startStates, CountingStateMachine.startStates);
+    }
+}
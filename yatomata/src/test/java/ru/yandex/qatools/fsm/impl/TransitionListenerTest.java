@@ -0,0 +1,188 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+import ru.yandex.qatools.fsm.TransitionListener;
+import ru.yandex.qatools.fsm.TransitionListeners;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.annotations.*;
+import ru.yandex.qatools.fsm.beans.*;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class TransitionListenerTest {
+
+    private static final int THREADS = 8;
+    private static final int STARTS_PER_THREAD = 1000;
+
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class),
+            @Transit(from = Running.class, on = TestFailed.class),
+            @Transit(from = Running.class, on = ProcessFailed.class, to = Idle.class),
+            @Transit(from = Running.class, on = ProcessCompleted.class, to = Idle.class, stop = true)
+    })
+    public static class ListenedStateMachine {
+        @OnTransit
+        public void onStart(Idle from, Running to, ProcessStarted event) {
+        }
+
+        @OnTransit
+        public void onTestFailed(Running state, TestFailed event) {
+            throw new IllegalStateException("preserved");
+        }
+
+        @OnTransit
+        public void onProcessFailed(Running from, Idle to, ProcessFailed event) {
+            throw new IllegalArgumentException("rolled back");
+        }
+
+        @OnException(preserve = true)
+        public void onPreserved(IllegalStateException e) {
+        }
+
+        @OnException
+        public void onRolledBack(IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testListenerIsNotified() throws Exception {
+        final TransitionListener listener = mock(TransitionListener.class);
+        final Yatomata<ListenedStateMachine> engine =
+                new FSMBuilder<>(ListenedStateMachine.class).withListener(listener).build();
+        final Object idle = engine.getCurrentState();
+        final ProcessStarted started = new ProcessStarted();
+        final Object running = engine.fire(started);
+        final Method onStart = ListenedStateMachine.class.getMethod("onStart", Idle.class, Running.class,
+                ProcessStarted.class);
+
+        final InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).onTransitionResolved(engine.getFSM(), idle, running, started);
+        inOrder.verify(listener).onHookStarted(engine.getFSM(), onStart);
+        inOrder.verify(listener).onHookFinished(same(engine.getFSM()), eq(onStart), anyLong(), (Throwable) isNull());
+        inOrder.verify(listener).onTransitionFinished(same(engine.getFSM()), same(idle), same(running), same(started),
+                eq(true), anyLong());
+
+        final TestPassed ignored = new TestPassed();
+        engine.fire(ignored);
+        verify(listener).onEventIgnored(engine.getFSM(), running, ignored);
+
+        engine.fire(new TestFailed());
+        verify(listener).onExceptionHandled(same(engine.getFSM()), same(running), same(running), any(TestFailed.class),
+                any(IllegalStateException.class), eq(true));
+
+        final ProcessCompleted completed = new ProcessCompleted();
+        engine.fire(completed);
+        verify(listener).onCompleted(engine.getFSM(), engine.getCurrentState(), completed);
+    }
+
+    @Test
+    public void testStatisticsAreCollected() throws Exception {
+        final TransitionStatistics statistics = new TransitionStatistics();
+        final FSMBuilder<ListenedStateMachine> builder =
+                new FSMBuilder<>(ListenedStateMachine.class).withListener(statistics);
+        for (int i = 0; i < 10; ++i) {
+            final Yatomata<ListenedStateMachine> engine = builder.build();
+            engine.fire(new ProcessStarted());
+            engine.fire(new TestPassed());
+            engine.fire(new TestFailed());
+            engine.fire(new ProcessFailed());
+            engine.fire(new ProcessCompleted());
+        }
+
+        final TransitionStatistics.Stats started =
+                statistics.getTransitionStats(Idle.class, ProcessStarted.class, Running.class);
+        assertEquals(10, started.getCount());
+        long histogramCount = 0;
+        for (long count : started.getHistogram()) {
+            histogramCount += count;
+        }
+        assertEquals(10, histogramCount);
+        assertEquals(10, statistics.getTransitionStats(Running.class, TestFailed.class, Running.class).getCount());
+        assertEquals(10, statistics.getIgnoredStats(Running.class, TestPassed.class).getCount());
+        assertNull(statistics.getIgnoredStats(Idle.class, TestPassed.class));
+        assertEquals(10, statistics.getHandledExceptionsCount(true));
+        assertEquals(10, statistics.getHandledExceptionsCount(false));
+        assertEquals(10, statistics.getRolledBackCount());
+        assertEquals(10, statistics.getCompletedCount());
+        assertEquals(10, statistics.getHookStats(ListenedStateMachine.class.getMethod("onStart", Idle.class,
+                Running.class, ProcessStarted.class)).getCount());
+    }
+
+    @Test
+    public void testListenersAreCombined() throws Exception {
+        final TransitionStatistics statistics = new TransitionStatistics();
+        final TransitionListener listener = mock(TransitionListener.class);
+        final Yatomata<ListenedStateMachine> engine = new FSMBuilder<>(ListenedStateMachine.class)
+                .withListener(statistics).withListener(listener).build();
+        engine.fire(new ProcessStarted());
+        engine.fire(new ProcessCompleted());
+
+        assertEquals(1, statistics.getTransitionStats(Idle.class, ProcessStarted.class, Running.class).getCount());
+        assertEquals(1, statistics.getCompletedCount());
+        verify(listener).onTransitionResolved(same(engine.getFSM()), isA(Idle.class), isA(Running.class),
+                isA(ProcessStarted.class));
+        verify(listener).onCompleted(same(engine.getFSM()), isA(Idle.class), isA(ProcessCompleted.class));
+    }
+
+    @Test
+    public void testComposedListenersAreFlattenedInOrder() throws Exception {
+        final TransitionListener first = mock(TransitionListener.class);
+        final TransitionListener second = mock(TransitionListener.class);
+        final TransitionListener third = mock(TransitionListener.class);
+        assertNull(TransitionListeners.compose());
+        assertNull(TransitionListeners.compose(null, null));
+        assertSame(first, TransitionListeners.compose(null, first));
+
+        final TransitionListener composed =
+                TransitionListeners.compose(TransitionListeners.compose(first, second), null, third);
+        final Object fsm = new Object();
+        composed.onEventIgnored(fsm, "state", "event");
+
+        final InOrder inOrder = inOrder(first, second, third);
+        inOrder.verify(first).onEventIgnored(fsm, "state", "event");
+        inOrder.verify(second).onEventIgnored(fsm, "state", "event");
+        inOrder.verify(third).onEventIgnored(fsm, "state", "event");
+    }
+
+    @Test
+    public void testHistogramSumsAllThreads() throws Exception {
+        final TransitionStatistics statistics = new TransitionStatistics();
+        final FSMBuilder<ListenedStateMachine> builder =
+                new FSMBuilder<>(ListenedStateMachine.class).withListener(statistics);
+        final Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; ++t) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < STARTS_PER_THREAD; ++i) {
+                        builder.build().fire(new ProcessStarted());
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        final TransitionStatistics.Stats started =
+                statistics.getTransitionStats(Idle.class, ProcessStarted.class, Running.class);
+        long histogramCount = 0;
+        for (long count : started.getHistogram()) {
+            histogramCount += count;
+        }
+        assertEquals(THREADS * STARTS_PER_THREAD, started.getCount());
+        assertEquals(THREADS * STARTS_PER_THREAD, histogramCount);
+    }
+}
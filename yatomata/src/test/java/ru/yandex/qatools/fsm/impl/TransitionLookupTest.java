@@ -0,0 +1,101 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.StateMachineException;
+import ru.yandex.qatools.fsm.annotations.FSM;
+import ru.yandex.qatools.fsm.annotations.Transit;
+import ru.yandex.qatools.fsm.annotations.Transitions;
+import ru.yandex.qatools.fsm.beans.*;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static ru.yandex.qatools.fsm.impl.Metadata.get;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class TransitionLookupTest {
+
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class),
+            @Transit(from = ExecuteState.class, on = ProcessTerminated.class, stop = true),
+            @Transit(from = Running.class, on = {ProcessCompleted.class, ProcessFailed.class}, stop = true),
+            @Transit(from = Running.class, on = ProcessEvent.class, to = Cancelling.class),
+    })
+    public static class LookupStateMachine {
+    }
+
+    @FSM(start = Idle.class)
+    @Transitions({
+            @Transit(from = Idle.class, on = ProcessStarted.class, to = Running.class),
+            @Transit(on = ProcessStarted.class, to = Cancelling.class),
+    })
+    public static class AmbiguousStateMachine {
+    }
+
+    @Test
+    public void testResolvedTransitionIsMemoized() throws Exception {
+        Metadata.ClassInfo info = get(LookupStateMachine.class);
+        TransitionModel.Transition transit = info.findSingleTransition(new Idle(), new ProcessStarted());
+        assertEquals(Running.class, transit.getTo());
+        assertSame(transit, info.findSingleTransition(new Idle(), new ProcessStarted()));
+    }
+
+    @Test
+    public void testSuperclassTransitionIsResolved() throws Exception {
+        Metadata.ClassInfo info = get(LookupStateMachine.class);
+        assertSame(info.findSingleTransition(new Cancelling(), new ProcessTerminated()),
+                info.findSingleTransition(new Running(), new ProcessTerminated()));
+        assertEquals(Cancelling.class, info.findSingleTransition(new Running(), new TestEventProcess()).getTo());
+    }
+
+    @Test
+    public void testModifyingTheSuperClassesDoesNotAffectTheLookup() throws Exception {
+        Metadata.ClassInfo info = get(LookupStateMachine.class);
+        Arrays.fill(info.getSuperClasses(Cancelling.class), Object.class);
+        assertSame(info.resolveSingleTransition(ExecuteState.class, ProcessTerminated.class),
+                info.resolveSingleTransition(Cancelling.class, ProcessTerminated.class));
+    }
+
+    @Test
+    public void testMissingTransitionIsMemoized() throws Exception {
+        Metadata.ClassInfo info = get(LookupStateMachine.class);
+        for (int i = 0; i < 3; ++i) {
+            assertNull(info.findSingleTransition(new Idle(), new ProcessCompleted()));
+            assertNull(info.findSingleTransition(new Cancelling(), new Object()));
+        }
+    }
+
+    @Test(expected = StateMachineException.class)
+    public void testAmbiguousTransitionIsNotMemoized() throws Exception {
+        Metadata.ClassInfo info = get(AmbiguousStateMachine.class);
+        try {
+            info.findSingleTransition(new Idle(), new ProcessStarted());
+        } catch (StateMachineException e) {
+            info.findSingleTransition(new Idle(), new ProcessStarted());
+        }
+    }
+
+    @Test
+    public void testModelIsIndexedByEventAndFromState() throws Exception {
+        final TransitionModel model = TransitionModel.of(LookupStateMachine.class.getAnnotation(FSM.class),
+                LookupStateMachine.class.getAnnotation(Transitions.class));
+        assertEquals(4, model.getTransitions().length);
+        assertEquals(1, model.getByEvent(ProcessCompleted.class).length);
+        assertSame(model.getByEvent(ProcessCompleted.class)[0], model.getByEvent(ProcessFailed.class)[0]);
+        assertEquals(2, model.getByFromState(Running.class).length);
+        assertEquals(0, model.getByFromState(Cancelling.class).length);
+        assertSame(model.getByFromState(ExecuteState.class)[0], model.find(ExecuteState.class, ProcessTerminated.class));
+        assertNull(model.find(Running.class, ProcessTerminated.class));
+        assertArrayEquals(new Class[]{Idle.class, Running.class, ExecuteState.class, Cancelling.class},
+                model.getStateClasses());
+    }
+
+    public static class TestEventProcess extends ProcessEvent {
+    }
+}
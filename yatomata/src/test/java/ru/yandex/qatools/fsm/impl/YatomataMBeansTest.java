@@ -0,0 +1,85 @@
+package ru.yandex.qatools.fsm.impl;
+
+import org.junit.Test;
+import ru.yandex.qatools.fsm.Yatomata;
+import ru.yandex.qatools.fsm.beans.*;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class YatomataMBeansTest {
+
+    private final MBeanServer server = MBeanServerFactory.newMBeanServer();
+
+    @Test
+    public void testStatisticsArePublished() throws Exception {
+        final YatomataMBeans mbeans = new YatomataMBeans(server).register();
+        final Yatomata<TransitionListenerTest.ListenedStateMachine> engine =
+                new FSMBuilder<>(TransitionListenerTest.ListenedStateMachine.class).withListener(mbeans).build();
+        engine.fire(new ProcessStarted());
+        engine.fire(new TestFailed());
+        engine.fire(new ProcessStarted());
+        engine.fire(new ProcessFailed());
+        engine.fire(new ProcessCompleted());
+
+        final ObjectName name = new ObjectName(YatomataMBeans.DOMAIN + ":type=FSM,name=" +
+                ObjectName.quote(TransitionListenerTest.ListenedStateMachine.class.getName()));
+        assertTrue(server.isRegistered(name));
+        assertEquals(5L, server.getAttribute(name, "Fires"));
+        assertEquals(4L, server.getAttribute(name, "Transitions"));
+        assertEquals(1L, server.getAttribute(name, "IgnoredEvents"));
+        assertEquals(2L, server.getAttribute(name, "Exceptions"));
+        assertEquals(1L, server.getAttribute(name, "Completions"));
+        assertTrue((Long) server.getAttribute(name, "MaxFireNanos") >= (Long) server.getAttribute(name, "MeanFireNanos"));
+        assertTrue((Long) server.getAttribute(name, "MetadataBuildNanos") > 0);
+
+        final ObjectName metadata = new ObjectName(YatomataMBeans.DOMAIN + ":type=Metadata");
+        assertTrue((Integer) server.getAttribute(metadata, "CachedClassesCount") > 0);
+        assertTrue((Integer) server.getAttribute(metadata, "SuperClassesCacheSize") > 0);
+        assertTrue(Arrays.asList((String[]) server.getAttribute(metadata, "CachedClasses"))
+                .contains(TransitionListenerTest.ListenedStateMachine.class.getName()));
+
+        mbeans.unregister();
+        assertFalse(server.isRegistered(name));
+        assertFalse(server.isRegistered(metadata));
+    }
+
+    @Test
+    public void testNothingIsRegisteredUntilRequested() throws Exception {
+        final YatomataMBeans mbeans = new YatomataMBeans(server);
+        final Yatomata<TransitionListenerTest.ListenedStateMachine> engine =
+                new FSMBuilder<>(TransitionListenerTest.ListenedStateMachine.class).withListener(mbeans).build();
+        engine.fire(new ProcessStarted());
+        engine.fire(new ProcessCompleted());
+
+        assertTrue(server.queryNames(new ObjectName(YatomataMBeans.DOMAIN + ":*"), null).isEmpty());
+        assertEquals(1, mbeans.getStatistics(TransitionListenerTest.ListenedStateMachine.class).getCompletions());
+    }
+
+    @Test
+    public void testReadingDoesNotBuildMetadata() throws Exception {
+        final YatomataMBeans mbeans = new YatomataMBeans(server).register();
+        new FSMBuilder<>(TransitionListenerTest.ListenedStateMachine.class).withListener(mbeans).build()
+                .fire(new ProcessStarted());
+        new FSMBuilder<>(FSMDefinitionTest.LIFECYCLE).withListener(mbeans).build().fire(new ProcessStarted());
+
+        Metadata.evict(TransitionListenerTest.ListenedStateMachine.class);
+        final ObjectName name = new ObjectName(YatomataMBeans.DOMAIN + ":type=FSM,name=" +
+                ObjectName.quote(TransitionListenerTest.ListenedStateMachine.class.getName()));
+        assertTrue((Long) server.getAttribute(name, "MetadataBuildNanos") > 0);
+        assertNull(Metadata.getIfCached(TransitionListenerTest.ListenedStateMachine.class));
+
+        final ObjectName definedName = new ObjectName(YatomataMBeans.DOMAIN + ":type=FSM,name=" +
+                ObjectName.quote(FSMDefinitionTest.Handler.class.getName()));
+        assertEquals(0L, server.getAttribute(definedName, "MetadataBuildNanos"));
+        assertEquals(1L, server.getAttribute(definedName, "Transitions"));
+        mbeans.unregister();
+    }
+}
@@ -5,11 +5,10 @@ import org.junit.Test;
 import java.io.Serializable;
 import java.util.List;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 import static ru.yandex.qatools.fsm.utils.ReflectUtils.collectAllSuperclassesAndInterfaces;
 import static ru.yandex.qatools.fsm.utils.ReflectUtils.containsClass;
+import static ru.yandex.qatools.fsm.utils.ReflectUtils.getSuperclassesAndInterfaces;
 
 /**
  * @author Ilya Sadykov
@@ -37,6 +36,10 @@ public class ReflectUtilsTest {
 
     }
 
+    class TestDiamondClass extends TestBaseClass implements TestBaseInterface, TestInterface, CommonInterface {
+
+    }
+
     @Test
     public void testCollectAllSuperclassesAndInterfaces() {
         List<Class> res = collectAllSuperclassesAndInterfaces(TestClass.class);
@@ -49,6 +52,23 @@ public class ReflectUtilsTest {
         }
     }
 
+    @Test
+    public void testInterfacesReachableAlongManyPathsAreListedOnce() {
+        Class[] expected = new Class[]{
+                TestDiamondClass.class, TestBaseInterface.class, CommonInterface.class, TestInterface.class,
+                TestBaseClass.class, Serializable.class, Object.class
+        };
+        assertArrayEquals(expected, collectAllSuperclassesAndInterfaces(TestDiamondClass.class).toArray());
+    }
+
+    @Test
+    public void testModifyingTheHierarchyDoesNotAffectTheCache() {
+        final Class[] hierarchy = getSuperclassesAndInterfaces(TestDiamondClass.class);
+        hierarchy[1] = Object.class;
+        assertEquals(TestBaseInterface.class, getSuperclassesAndInterfaces(TestDiamondClass.class)[1]);
+        assertEquals(TestBaseInterface.class, collectAllSuperclassesAndInterfaces(TestDiamondClass.class).get(1));
+    }
+
     @Test
     public void testContainsClass() {
         Class[] classes = new Class[]{TestInterface.class, TestBaseClass.class, CommonInterface.class};